@@ -0,0 +1,116 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Writes synthetic ingredient and recipe files for the benchmarks with a
+ * {@link DatasetGenerator}, always with the same seed and reference date so every run
+ * benchmarks the same files.
+ */
+public class BenchmarkData {
+  private static final LocalDate REFERENCE_DATE = LocalDate.of(2024, 12, 1);
+  private static final long SEED = 1003;
+
+  // Private constructor to prevent instantiation
+  private BenchmarkData() {
+    throw new UnsupportedOperationException("Utility class");
+  }
+
+  /**
+   * Gets the name of a synthetic ingredient.
+   *
+   * @param id the id of the ingredient.
+   * @return the name.
+   */
+  public static String ingredientName(int id) {
+    return DatasetGenerator.ingredientName(id);
+  }
+
+  /**
+   * Gets the number of distinct ingredient names used for a number of batches.
+   *
+   * @param batches the number of batches.
+   * @return the number of names.
+   */
+  public static int distinctNames(int batches) {
+    return Math.max(1, batches / 10);
+  }
+
+  /**
+   * Gets the path of a file in the resource folder, where the storage and the recipe manager
+   * look for their files.
+   *
+   * @param filename the name of the file.
+   * @return the path of the file.
+   */
+  public static Path resourcePath(String filename) {
+    URL root = Objects.requireNonNull(BenchmarkData.class.getClassLoader().getResource(""));
+    return new File(URLDecoder.decode(root.getPath(), StandardCharsets.UTF_8), filename).toPath();
+  }
+
+  /**
+   * Writes an ingredients file with batches spread over {@link #distinctNames(int)} names.
+   *
+   * @param file the file to write.
+   * @param batches the number of batches.
+   * @throws IOException if the file could not be written.
+   */
+  public static void writeIngredients(Path file, int batches) throws IOException {
+    new DatasetGenerator(SEED, distinctNames(batches), REFERENCE_DATE)
+        .writeIngredients(file, batches);
+  }
+
+  /**
+   * Writes a recipe file where every recipe uses a few of the ingredient names.
+   *
+   * @param file the file to write.
+   * @param recipes the number of recipes.
+   * @param ingredientNames the number of ingredient names to pick from.
+   * @throws IOException if the file could not be written.
+   */
+  public static void writeRecipes(Path file, int recipes, int ingredientNames)
+      throws IOException {
+    new DatasetGenerator(SEED, ingredientNames, REFERENCE_DATE).writeRecipes(file, recipes);
+  }
+
+  /**
+   * Moves a file out of the way so a benchmark can use its name, see {@link #restore(Path)}.
+   *
+   * @param file the file.
+   * @throws IOException if the file could not be moved.
+   */
+  public static void backUp(Path file) throws IOException {
+    if (Files.exists(file)) {
+      Files.move(file, backupOf(file), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Puts back a file that was moved by {@link #backUp(Path)}, or deletes the file if there was
+   * nothing to back up.
+   *
+   * @param file the file.
+   * @throws IOException if the file could not be moved.
+   */
+  public static void restore(Path file) throws IOException {
+    Path backup = backupOf(file);
+    if (Files.exists(backup)) {
+      Files.move(backup, file, StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static Path backupOf(Path file) {
+    return file.resolveSibling(file.getFileName() + ".benchmark-backup");
+  }
+}
@@ -0,0 +1,124 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of loading the recipe file and of suggesting recipes. The recipes use the
+ * ingredient names of a 10 000 batch ingredients file, so some of them can be made.
+ *
+ * <p>{@link #findCookableRecipes()} checks every recipe against the stock through
+ * {@link RecipeFeasibility}. Run with {@code -prof gc} to see that it allocates nothing.
+ * {@link #searchRecipes()} and {@link #searchRecipesByPartialWord()} ask the full-text index
+ * for the 10 best matches, and {@link #suggestCheapestRecipes()} for the 10 cheapest recipes
+ * that can be made.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeBenchmark {
+  private static final String INGREDIENTS = "ingredients.txt";
+  private static final String RECIPES = "benchmark-recipes.txt";
+  private static final int INGREDIENT_COUNT = 10_000;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  private int recipeCount;
+
+  private Path ingredientsFile;
+  private Path recipesFile;
+  private FoodStorage foodStorage;
+  private RecipeManager recipeManager;
+  private RecipeFeasibility feasibility;
+  private int[] cookable;
+
+  /**
+   * Writes the ingredient and recipe files, and loads them once.
+   *
+   * @throws IOException if a file could not be written.
+   */
+  @Setup(Level.Trial)
+  public void writeFiles() throws IOException {
+    ingredientsFile = BenchmarkData.resourcePath(INGREDIENTS);
+    recipesFile = BenchmarkData.resourcePath(RECIPES);
+    BenchmarkData.backUp(ingredientsFile);
+    BenchmarkData.writeIngredients(ingredientsFile, INGREDIENT_COUNT);
+    BenchmarkData.writeRecipes(recipesFile, recipeCount,
+        BenchmarkData.distinctNames(INGREDIENT_COUNT));
+    foodStorage = new FoodStorage();
+    recipeManager = new RecipeManager();
+    recipeManager.suggestRecipes(foodStorage, RECIPES);
+
+    feasibility = new RecipeFeasibility(ColumnarInventory.of(foodStorage.getIngredients()));
+    List<Recipe> recipes = new ArrayList<>();
+    RecipeFileParser.parseFile(recipesFile.toString(), recipes::add);
+    recipes.forEach(feasibility::add);
+    cookable = new int[feasibility.size()];
+  }
+
+  /**
+   * Deletes the recipe file and puts back the ingredients file that was there before.
+   *
+   * @throws IOException if a file could not be restored.
+   */
+  @TearDown(Level.Trial)
+  public void restoreFiles() throws IOException {
+    BenchmarkData.restore(recipesFile);
+    BenchmarkData.restore(ingredientsFile);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 5)
+  public RecipeManager loadRecipesFromFile() {
+    RecipeManager manager = new RecipeManager();
+    manager.loadRecipesFromFile(RECIPES);
+    return manager;
+  }
+
+  @Benchmark
+  public List<String> suggestRecipes() {
+    return recipeManager.suggestRecipes(foodStorage, RECIPES);
+  }
+
+  @Benchmark
+  public List<RecipeSuggestion> suggestCheapestRecipes() {
+    return recipeManager.suggestTopRecipes(foodStorage, RECIPES, 10,
+        RecipeSuggestion.CHEAPEST_FIRST);
+  }
+
+  @Benchmark
+  public List<Recipe> searchRecipes() {
+    return recipeManager.searchRecipes(RECIPES, "fry salmon", 10);
+  }
+
+  @Benchmark
+  public List<Recipe> searchRecipesByPartialWord() {
+    return recipeManager.searchRecipes(RECIPES, "choc", 10);
+  }
+
+  @Benchmark
+  public int findCookableRecipes() {
+    return feasibility.findCookable(cookable);
+  }
+}
@@ -0,0 +1,138 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of loading the ingredients file and of looking up and removing ingredients.
+ * The ingredients are written to ingredients.txt in the resource folder, as
+ * {@link FoodStorage#removeIngredient} always works on that file, and the file that was there
+ * is put back afterwards. {@link #completeIngredientName()} completes the first two letters
+ * of a name through an {@link IngredientNameTrie} over the names in storage.
+ * {@link #removeIngredient()} starts every iteration from the stock in the file as written,
+ * so no iteration measures removals from names that earlier ones used up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+  private static final String FILENAME = "ingredients.txt";
+
+  @Param({"10000", "100000", "1000000", "10000000"})
+  private int ingredientCount;
+
+  private Path file;
+  private FoodStorage foodStorage;
+  private ColumnarInventory.Batch columnarCursor;
+  private IngredientNameTrie ingredientNames;
+  private String[] names;
+  private int next;
+  private boolean removed; // True once the stock in memory and the file differ from the start
+
+  /**
+   * Writes the ingredients file and loads it.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  @Setup(Level.Trial)
+  public void writeFile() throws IOException {
+    file = BenchmarkData.resourcePath(FILENAME);
+    BenchmarkData.backUp(file);
+    BenchmarkData.writeIngredients(file, ingredientCount);
+    foodStorage = new FoodStorage();
+    foodStorage.loadIngredientsFromFile(FILENAME);
+    columnarCursor = ColumnarInventory.of(foodStorage.getIngredients()).cursor();
+    ingredientNames = new IngredientNameTrie();
+    ingredientNames.ingredientsReloaded(foodStorage);
+    names = new String[BenchmarkData.distinctNames(ingredientCount)];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = BenchmarkData.ingredientName(i);
+    }
+  }
+
+  /**
+   * Writes the ingredients file again and reloads it if the last iteration removed
+   * ingredients, so every iteration removes from the same stock and appends to a log without
+   * removals.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  @Setup(Level.Iteration)
+  public void resetStock() throws IOException {
+    if (removed) {
+      BenchmarkData.writeIngredients(file, ingredientCount);
+      foodStorage = new FoodStorage();
+      foodStorage.loadIngredientsFromFile(FILENAME);
+      next = 0;
+      removed = false;
+    }
+  }
+
+  /**
+   * Puts back the ingredients file that was there before.
+   *
+   * @throws IOException if the file could not be restored.
+   */
+  @TearDown(Level.Trial)
+  public void restoreFile() throws IOException {
+    Files.deleteIfExists(file.resolveSibling(FILENAME + ".tmp"));
+    Files.deleteIfExists(file.resolveSibling(FILENAME + ".lock"));
+    BenchmarkData.restore(file);
+  }
+
+  private String nextName() {
+    next = next + 1 == names.length ? 0 : next + 1;
+    return names[next];
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 5)
+  public FoodStorage loadIngredientsFromFile() {
+    FoodStorage storage = new FoodStorage();
+    storage.loadIngredientsFromFile(FILENAME);
+    return storage;
+  }
+
+  @Benchmark
+  public IngredientInfo getIngredientsByName() {
+    return foodStorage.getIngredients(nextName());
+  }
+
+  @Benchmark
+  public int getColumnarUnitsByName() {
+    return columnarCursor.moveToFirst(nextName()) ? columnarCursor.numberOfUnits() : -1;
+  }
+
+  @Benchmark
+  public List<String> completeIngredientName() {
+    return ingredientNames.complete(nextName().substring(0, 2), 10);
+  }
+
+  @Benchmark
+  public boolean removeIngredient() {
+    removed = true;
+    return foodStorage.removeIngredient(nextName(), 1);
+  }
+}
@@ -0,0 +1,197 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary, column by column storage of ingredients. Names and units are written once in a
+ * dictionary and referred to by their index, and every field is stored as a column of fixed
+ * size values, so reading the file is a few bulk copies instead of parsing text.
+ *
+ * <p>Layout: magic, version, number of ingredients, name dictionary, unit dictionary, and then
+ * the columns name id, unit id, number of units, price and expiration date as epoch day.
+ */
+public class BinaryIngredientFormat {
+  private static final int MAGIC = 0x46534231; // "FSB1"
+  private static final int VERSION = 1;
+
+  // Private constructor to prevent instantiation
+  private BinaryIngredientFormat() {
+    throw new UnsupportedOperationException("Utility class");
+  }
+
+  /**
+   * Writes ingredients to a binary file, replacing its content.
+   *
+   * @param filePath the path of the file.
+   * @param ingredients the ingredients to write.
+   * @throws IOException if the file could not be written.
+   */
+  public static void write(String filePath, Collection<Ingredient> ingredients)
+      throws IOException {
+    Map<String, Integer> names = new LinkedHashMap<>();
+    Map<String, Integer> units = new LinkedHashMap<>();
+    int count = ingredients.size();
+    int[] nameIds = new int[count];
+    int[] unitIds = new int[count];
+    int[] numberOfUnits = new int[count];
+    double[] prices = new double[count];
+    int[] expirationDays = new int[count];
+
+    int i = 0;
+    for (Ingredient ingredient : ingredients) {
+      nameIds[i] = names.computeIfAbsent(ingredient.getName(), name -> names.size());
+      unitIds[i] = units.computeIfAbsent(String.valueOf(ingredient.getUnit()),
+          unit -> units.size());
+      numberOfUnits[i] = ingredient.getNumberOfItems();
+      prices[i] = ingredient.getPrice();
+      expirationDays[i] = (int) ingredient.getExpirationDate().toEpochDay();
+      i++;
+    }
+
+    FileOutputStream file = new FileOutputStream(filePath);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(count);
+      writeDictionary(out, names.keySet());
+      writeDictionary(out, units.keySet());
+      for (int[] column : new int[][] {nameIds, unitIds, numberOfUnits}) {
+        for (int value : column) {
+          out.writeInt(value);
+        }
+      }
+      for (double price : prices) {
+        out.writeDouble(price);
+      }
+      for (int day : expirationDays) {
+        out.writeInt(day);
+      }
+      out.flush();
+      file.getFD().sync(); // The snapshot is on disk before a log refers to it
+    }
+  }
+
+  private static void writeDictionary(DataOutputStream out, Collection<String> words)
+      throws IOException {
+    out.writeInt(words.size());
+    for (String word : words) {
+      byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Reads ingredients from a binary file.
+   *
+   * @param filePath the path of the file.
+   * @return the ingredients, in the order they were written.
+   * @throws IOException if the file could not be read, is not a binary ingredient file or is
+   *     corrupt or cut short.
+   */
+  public static List<Ingredient> read(String filePath) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+        throw new IOException("Not a binary ingredient file: " + filePath);
+      }
+      if (buffer.getInt() != VERSION) {
+        throw new IOException("Unsupported binary ingredient file version: " + filePath);
+      }
+      try {
+        return readIngredients(buffer);
+      } catch (BufferUnderflowException | IndexOutOfBoundsException
+               | IllegalArgumentException | NegativeArraySizeException | DateTimeException e) {
+        throw new IOException("Corrupt binary ingredient file " + filePath + " at offset "
+            + buffer.position(), e);
+      }
+    }
+  }
+
+  private static List<Ingredient> readIngredients(ByteBuffer buffer) {
+    int count = buffer.getInt();
+    String[] names = readDictionary(buffer);
+    String[] units = readDictionary(buffer);
+    int[] nameIds = readInts(buffer, count);
+    int[] unitIds = readInts(buffer, count);
+    int[] numberOfUnits = readInts(buffer, count);
+    double[] prices = new double[count];
+    buffer.asDoubleBuffer().get(prices);
+    buffer.position(buffer.position() + count * Double.BYTES);
+    int[] expirationDays = readInts(buffer, count);
+
+    List<Ingredient> ingredients = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ingredients.add(new Ingredient(names[nameIds[i]], units[unitIds[i]], numberOfUnits[i],
+          prices[i], LocalDate.ofEpochDay(expirationDays[i])));
+    }
+    return ingredients;
+  }
+
+  private static String[] readDictionary(ByteBuffer buffer) {
+    String[] words = new String[buffer.getInt()];
+    for (int i = 0; i < words.length; i++) {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      words[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return words;
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return values;
+  }
+
+  /**
+   * Converts an ingredients text file to a binary file. The records in the text file are
+   * replayed first, so the binary file holds the batches that are left. The text file is only
+   * read, it is not repaired like a log that is loaded.
+   *
+   * @param textPath the path of the text file.
+   * @param binaryPath the path of the binary file.
+   * @throws IOException if a file could not be read or written.
+   */
+  public static void convertTextToBinary(String textPath, String binaryPath) throws IOException {
+    FoodStorage foodStorage = new FoodStorage();
+    new IngredientLog(textPath).replayReadOnly(foodStorage);
+    write(binaryPath, foodStorage.getIngredients());
+  }
+
+  /**
+   * Converts a binary ingredients file to a text file with one record per ingredient.
+   *
+   * @param binaryPath the path of the binary file.
+   * @param textPath the path of the text file.
+   * @throws IOException if a file could not be read or written.
+   */
+  public static void convertBinaryToText(String binaryPath, String textPath) throws IOException {
+    List<Ingredient> ingredients = read(binaryPath);
+    try (BufferedWriter writer = Files.newBufferedWriter(Path.of(textPath))) {
+      for (Ingredient ingredient : ingredients) {
+        writer.write(ingredient.toString());
+        writer.newLine();
+      }
+    }
+  }
+}
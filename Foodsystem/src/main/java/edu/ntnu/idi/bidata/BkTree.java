@@ -0,0 +1,188 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * BK-tree over words, to find the words within an edit distance of a word. The edit distance is
+ * the Levenshtein distance, the number of letters that have to be inserted, deleted or changed
+ * to turn one word into the other. Every child of a node is at a different distance from it,
+ * and by the triangle inequality a word within distance d of a query can only be below the
+ * children at distance {@code x - d} to {@code x + d} from a node at distance x, so a search
+ * looks at a small part of the tree when d is small.
+ *
+ * <p>Words are compared as they are, callers that ignore case add lower-case words. A removed
+ * word stays in the tree to guide searches, it is only no longer found. The methods are
+ * synchronized.
+ */
+public class BkTree {
+  private Node root;
+  private int size;
+
+  /**
+   * A word and the nodes below it, by their distance to it.
+   */
+  private static final class Node {
+    private final String word;
+    private Node[] children = new Node[0]; // Child at each distance, null where there is none
+    private boolean present = true;
+
+    private Node(String word) {
+      this.word = word;
+    }
+  }
+
+  /**
+   * A word that was found.
+   *
+   * @param word the word.
+   * @param distance the edit distance to the query.
+   */
+  public record Match(String word, int distance) {
+  }
+
+  /**
+   * Adds a word, or finds it again if it was removed.
+   *
+   * @param word the word.
+   */
+  public synchronized void add(String word) {
+    if (root == null) {
+      root = new Node(word);
+      size++;
+      return;
+    }
+    Node node = root;
+    while (true) {
+      int distance = distance(node.word, word);
+      if (distance == 0) {
+        if (!node.present) {
+          node.present = true;
+          size++;
+        }
+        return;
+      }
+      if (distance >= node.children.length) {
+        node.children = Arrays.copyOf(node.children, distance + 1);
+      }
+      if (node.children[distance] == null) {
+        node.children[distance] = new Node(word);
+        size++;
+        return;
+      }
+      node = node.children[distance];
+    }
+  }
+
+  /**
+   * Removes a word, so it is no longer found.
+   *
+   * @param word the word.
+   * @return true if the word was removed, false if it was not in the tree.
+   */
+  public synchronized boolean remove(String word) {
+    Node node = root;
+    while (node != null) {
+      int distance = distance(node.word, word);
+      if (distance == 0) {
+        boolean wasPresent = node.present;
+        if (wasPresent) {
+          node.present = false;
+          size--;
+        }
+        return wasPresent;
+      }
+      node = distance < node.children.length ? node.children[distance] : null;
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of words in the tree.
+   *
+   * @return the number of words.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Finds the words within an edit distance of a word.
+   *
+   * @param word the word.
+   * @param maxDistance the largest edit distance.
+   * @return the words, closest first, words at the same distance in alphabetical order.
+   */
+  public synchronized List<Match> within(String word, int maxDistance) {
+    List<Match> matches = new ArrayList<>();
+    if (root == null || maxDistance < 0) {
+      return matches;
+    }
+    Deque<Node> toVisit = new ArrayDeque<>();
+    toVisit.push(root);
+    while (!toVisit.isEmpty()) {
+      Node node = toVisit.pop();
+      int distance = distance(node.word, word);
+      if (distance <= maxDistance && node.present) {
+        matches.add(new Match(node.word, distance));
+      }
+      int last = Math.min(distance + maxDistance, node.children.length - 1);
+      for (int i = Math.max(1, distance - maxDistance); i <= last; i++) {
+        if (node.children[i] != null) {
+          toVisit.push(node.children[i]);
+        }
+      }
+    }
+    matches.sort(Comparator.comparingInt(Match::distance).thenComparing(Match::word));
+    return matches;
+  }
+
+  /**
+   * Finds the word closest to a word, within an edit distance.
+   *
+   * @param word the word.
+   * @param maxDistance the largest edit distance.
+   * @return the closest word, the first in alphabetical order if several are as close, or null
+   *     if there is no word within the distance.
+   */
+  public synchronized String closest(String word, int maxDistance) {
+    List<Match> matches = within(word, maxDistance);
+    return matches.isEmpty() ? null : matches.get(0).word();
+  }
+
+  /**
+   * Gets the Levenshtein distance between two words.
+   *
+   * @param a the first word.
+   * @param b the second word.
+   * @return the number of letters to insert, delete or change to turn one word into the other.
+   */
+  public static int distance(String a, String b) {
+    if (a.length() < b.length()) {
+      String longer = b;
+      b = a;
+      a = longer;
+    }
+    int[] previous = new int[b.length() + 1]; // Distances from a prefix of a to each prefix of b
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      char letter = a.charAt(i - 1);
+      for (int j = 1; j <= b.length(); j++) {
+        int change = previous[j - 1] + (letter == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(change, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+}
@@ -0,0 +1,546 @@
+package edu.ntnu.idi.bidata;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ingredient store that keeps every field of the batches in its own primitive array instead
+ * of an {@link Ingredient} object per batch. Names and units are stored once in a dictionary
+ * and referred to by id, and expiry dates are stored as epoch days. Large inventories take a
+ * fraction of the heap of {@link FoodStorage}, and scans read the arrays in order.
+ *
+ * <p>Batches are read through a {@link Batch} cursor, a flyweight that is moved from row to
+ * row, so looking up and scanning batches allocates nothing. The batches of a name are linked
+ * in the order they are used, first expired, first out, and removals take units from them in
+ * that order like in {@link FoodStorage}. The amount of every name in stock is kept as batches
+ * come and go. A cursor has to be moved again after the store changes. The store is not
+ * thread-safe.
+ */
+public class ColumnarInventory {
+  private static final int NONE = -1;
+  private static final int MIN_ROWS_BEFORE_COMPACTION = 1024;
+
+  private final StringDictionary spellings = new StringDictionary(false); // Names as written
+  private final StringDictionary keys = new StringDictionary(true); // Names ignoring case
+  private final StringDictionary units = new StringDictionary(false);
+  // One entry per unit id: the dimension code and the base quantity of one unit
+  private int[] unitDimensions = new int[16];
+  private long[] unitBaseQuantities = new long[16];
+
+  // One entry per row, a row is a batch. Removed batches keep their row with 0 units until
+  // the arrays are compacted.
+  private int[] nameIds = new int[16];
+  private int[] keyIds = new int[16];
+  private int[] unitIds = new int[16];
+  private int[] quantities = new int[16];
+  private double[] prices = new double[16];
+  private int[] expiryDays = new int[16];
+  private int[] nextOfName = new int[16]; // Row of the batch of the same name used next
+  private int rows;
+  private int liveRows;
+
+  // One entry per name, by key id. The first batch is the one used first.
+  private int[] firstOfName = new int[16];
+  private int[] lastOfName = new int[16];
+  // Base quantity of the batches of a name in the dimension of its first batch
+  private long[] availableOfName = new long[16];
+
+  /**
+   * Creates a store holding a number of batches.
+   *
+   * @param ingredients the batches, in the order they were added.
+   * @return the store.
+   */
+  public static ColumnarInventory of(Collection<Ingredient> ingredients) {
+    ColumnarInventory inventory = new ColumnarInventory();
+    for (Ingredient ingredient : ingredients) {
+      inventory.add(ingredient.getName(), ingredient.getUnit(), ingredient.getNumberOfItems(),
+          ingredient.getPrice(), ingredient.getExpirationDate());
+    }
+    return inventory;
+  }
+
+  /**
+   * Adds a batch.
+   *
+   * @param name the name of the ingredient.
+   * @param unit the unit of the ingredient.
+   * @param numberOfUnits the number of units, at least 1.
+   * @param price the price of the batch.
+   * @param expirationDate the expiration date.
+   */
+  public void add(String name, String unit, int numberOfUnits, double price,
+                  LocalDate expirationDate) {
+    if (numberOfUnits <= 0) {
+      throw new IllegalArgumentException("Number of units must be positive");
+    }
+    if (rows == quantities.length) {
+      growRows(rows * 2);
+    }
+    int key = keyId(name);
+
+    int row = rows++;
+    nameIds[row] = spellings.add(name);
+    keyIds[row] = key;
+    unitIds[row] = unitId(unit);
+    quantities[row] = numberOfUnits;
+    prices[row] = price;
+    expiryDays[row] = (int) expirationDate.toEpochDay();
+    int first = firstOfName[key];
+    link(row, key);
+    if (first == NONE || dimensionOfRow(first) != dimensionOfRow(firstOfName[key])) {
+      updateAvailable(key);
+    } else if (dimensionOfRow(row) == dimensionOfRow(first)) {
+      availableOfName[key] += baseQuantityOf(row);
+    }
+    liveRows++;
+  }
+
+  /**
+   * Links a batch into the batches of its name, in the order they are used: by expiry day, and
+   * in the order they were added for batches that expire on the same day.
+   */
+  private void link(int row, int key) {
+    int previous = lastOfName[key];
+    int next = NONE;
+    if (previous != NONE && expiryDays[previous] > expiryDays[row]) {
+      previous = NONE;
+      next = firstOfName[key];
+      while (expiryDays[next] <= expiryDays[row]) {
+        previous = next;
+        next = nextOfName[next];
+      }
+    }
+    nextOfName[row] = next;
+    if (previous == NONE) {
+      firstOfName[key] = row;
+    } else {
+      nextOfName[previous] = row;
+    }
+    if (next == NONE) {
+      lastOfName[key] = row;
+    }
+  }
+
+  /**
+   * Removes units of an ingredient, first expired, first out, like
+   * {@link FoodStorage#takeIngredient(String, int)}. The units are in the unit of the batch that
+   * is used first, and are taken from the batches in a unit of the same dimension. Batches that
+   * are used up are removed, and what is left of a batch that is used in part is kept in its
+   * unit, or in the base unit if it is not a whole number of it. Nothing changes if there is
+   * less in stock.
+   *
+   * @param name the name of the ingredient.
+   * @param unitsToRemove the number of units to remove, 0 removes the batch that is used first.
+   * @return true if the stock was changed, false otherwise.
+   */
+  public boolean removeUnits(String name, int unitsToRemove) {
+    int key = keys.idOf(name);
+    int first = key < 0 ? NONE : firstOfName[key];
+    if (first == NONE) {
+      return false;
+    }
+    int dimension = dimensionOfRow(first);
+    if (unitsToRemove == 0) {
+      availableOfName[key] -= baseQuantityOf(first);
+      removeRow(key, NONE, first);
+    } else {
+      long left = toBase(unitIds[first], unitsToRemove);
+      if (availableOfName[key] < left) {
+        return false;
+      }
+      availableOfName[key] -= left;
+      int previous = NONE;
+      int row = first;
+      while (left > 0) {
+        int next = nextOfName[row];
+        if (dimensionOfRow(row) != dimension) {
+          previous = row;
+        } else if (baseQuantityOf(row) <= left) {
+          left -= baseQuantityOf(row);
+          removeRow(key, previous, row);
+        } else {
+          setBaseQuantity(row, baseQuantityOf(row) - left);
+          left = 0;
+        }
+        row = next;
+      }
+    }
+    first = firstOfName[key];
+    if (first == NONE || dimensionOfRow(first) != dimension) {
+      updateAvailable(key);
+    }
+    if (rows >= MIN_ROWS_BEFORE_COMPACTION && liveRows * 2 < rows) {
+      compact();
+    }
+    return true;
+  }
+
+  /**
+   * Unlinks a used up batch from the batches of its name and marks its row as removed.
+   */
+  private void removeRow(int key, int previous, int row) {
+    int next = nextOfName[row];
+    if (previous == NONE) {
+      firstOfName[key] = next;
+    } else {
+      nextOfName[previous] = next;
+    }
+    if (next == NONE) {
+      lastOfName[key] = previous;
+    }
+    quantities[row] = 0;
+    liveRows--;
+  }
+
+  /**
+   * Sets the amount of a batch to a base quantity, in its unit if the quantity is a whole
+   * number of it and in the base unit of its dimension otherwise.
+   */
+  private void setBaseQuantity(int row, long base) {
+    int unitId = unitIds[row];
+    if (base % unitBaseQuantities[unitId] != 0) {
+      unitId = unitId(MeasurementUnit.parse(units.word(unitId)).getBaseUnit().getDisplayName());
+      unitIds[row] = unitId;
+    }
+    quantities[row] = (int) (base / unitBaseQuantities[unitId]);
+  }
+
+  /**
+   * Sums the batches of a name in the dimension of its first batch, after the first batch
+   * changed to one of another dimension.
+   */
+  private void updateAvailable(int key) {
+    long available = 0;
+    int first = firstOfName[key];
+    for (int row = first; row != NONE; row = nextOfName[row]) {
+      if (dimensionOfRow(row) == dimensionOfRow(first)) {
+        available += baseQuantityOf(row);
+      }
+    }
+    availableOfName[key] = available;
+  }
+
+  private int dimensionOfRow(int row) {
+    return unitDimensions[unitIds[row]];
+  }
+
+  private long baseQuantityOf(int row) {
+    return toBase(unitIds[row], quantities[row]);
+  }
+
+  /**
+   * Checks if an ingredient is in the store.
+   *
+   * @param name the name of the ingredient.
+   * @return true if it has at least one batch.
+   */
+  public boolean contains(String name) {
+    int key = keys.idOf(name);
+    return key >= 0 && firstOfName[key] != NONE;
+  }
+
+  /**
+   * Gets the batch of an ingredient that is used first, like
+   * {@link FoodStorage#getIngredients(String)}. This allocates the result, use
+   * {@link Batch#moveToFirst(String)} to read it without.
+   *
+   * @param name the name of the ingredient.
+   * @return the ingredient info, or null if the ingredient is not in the store.
+   */
+  public IngredientInfo getIngredients(String name) {
+    Batch batch = cursor();
+    if (!batch.moveToFirst(name)) {
+      return null;
+    }
+    return new IngredientInfo(batch.name(), batch.numberOfUnits(), batch.unit(), batch.price());
+  }
+
+  /**
+   * Gets the number of batches in the store.
+   *
+   * @return the number of batches.
+   */
+  public int size() {
+    return liveRows;
+  }
+
+  /**
+   * Counts the batches that expire before a day, without allocating.
+   *
+   * @param epochDay the day, counted from 1970-01-01.
+   * @return the number of batches.
+   */
+  public int countExpiringBefore(long epochDay) {
+    int count = 0;
+    for (int row = 0; row < rows; row++) {
+      if (quantities[row] > 0 && expiryDays[row] < epochDay) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Sums the prices of all batches, without allocating.
+   *
+   * @return the total price.
+   */
+  public double totalPrice() {
+    double total = 0.0;
+    for (int row = 0; row < rows; row++) {
+      if (quantities[row] > 0) {
+        total += prices[row];
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Creates an ingredient object for every batch, in the order of the rows.
+   *
+   * @return the batches.
+   */
+  public List<Ingredient> toIngredients() {
+    List<Ingredient> ingredients = new ArrayList<>(liveRows);
+    Batch batch = cursor();
+    while (batch.next()) {
+      ingredients.add(new Ingredient(batch.name(), batch.unit(), batch.numberOfUnits(),
+          batch.price(), batch.expirationDate()));
+    }
+    return ingredients;
+  }
+
+  /**
+   * Creates a cursor over the batches. A cursor can be reused for any number of lookups and
+   * scans.
+   *
+   * @return a cursor before the first row.
+   */
+  public Batch cursor() {
+    return new Batch();
+  }
+
+  /**
+   * Gets the id of a name, adding the name without any batches if it is not known yet. The
+   * id of a name never changes, so it can be resolved once and used for every lookup after.
+   *
+   * @param name the name of the ingredient, case is ignored.
+   * @return the id.
+   */
+  int keyId(String name) {
+    int knownKeys = keys.size();
+    int key = keys.add(name);
+    if (key == knownKeys) { // A new name
+      if (key == firstOfName.length) {
+        firstOfName = Arrays.copyOf(firstOfName, key * 2);
+        lastOfName = Arrays.copyOf(lastOfName, key * 2);
+        availableOfName = Arrays.copyOf(availableOfName, key * 2);
+      }
+      firstOfName[key] = NONE;
+      lastOfName[key] = NONE;
+    }
+    return key;
+  }
+
+  /**
+   * Gets the id of a unit, adding the unit if it is not known yet.
+   *
+   * @param unit the unit.
+   * @return the id.
+   */
+  int unitId(String unit) {
+    int knownUnits = units.size();
+    int id = units.add(unit);
+    if (id == knownUnits) { // A new unit
+      if (id == unitDimensions.length) {
+        unitDimensions = Arrays.copyOf(unitDimensions, id * 2);
+        unitBaseQuantities = Arrays.copyOf(unitBaseQuantities, id * 2);
+      }
+      MeasurementUnit measurementUnit = MeasurementUnit.parse(unit);
+      // A unit that is not known only matches itself, so it gets a dimension of its own
+      unitDimensions[id] = measurementUnit == null
+          ? MeasurementUnit.Dimension.values().length + id
+          : measurementUnit.getDimension().ordinal();
+      unitBaseQuantities[id] = measurementUnit == null ? 1 : measurementUnit.toBase(1);
+    }
+    return id;
+  }
+
+  /**
+   * Gets the dimension code of a unit. Amounts can be compared when their codes are equal.
+   *
+   * @param unitId the id of the unit.
+   * @return the code.
+   */
+  int dimensionOf(int unitId) {
+    return unitDimensions[unitId];
+  }
+
+  /**
+   * Turns an amount of a unit into the base unit of its dimension, see {@link MeasurementUnit}.
+   *
+   * @param unitId the id of the unit.
+   * @param amount the amount.
+   * @return the base quantity.
+   */
+  long toBase(int unitId, int amount) {
+    return amount * unitBaseQuantities[unitId];
+  }
+
+  /**
+   * Gets the base quantity of a name in stock, over all its batches in the dimension of the
+   * batch that is used first, like {@link FoodStorage#getAvailable(String)}. This does not look
+   * at the batches or allocate.
+   *
+   * @param key the id of the name.
+   * @return the base quantity, or 0 if the name has no batches.
+   */
+  long availableBaseQuantity(int key) {
+    return availableOfName[key];
+  }
+
+  /**
+   * Gets the dimension code of the unit of the batch of a name that is used first.
+   *
+   * @param key the id of the name.
+   * @return the code, or -1 if the name has no batches.
+   */
+  int firstDimension(int key) {
+    int row = firstOfName[key];
+    return row == NONE ? NONE : unitDimensions[unitIds[row]];
+  }
+
+  /**
+   * Gets the price of the batch of a name that is used first.
+   *
+   * @param key the id of the name.
+   * @return the price, or 0 if the name has no batches.
+   */
+  double firstPrice(int key) {
+    int row = firstOfName[key];
+    return row == NONE ? 0.0 : prices[row];
+  }
+
+  /**
+   * Drops the rows of removed batches. The order of the remaining rows is kept, and the rows
+   * are linked again in the order they are used.
+   */
+  private void compact() {
+    int target = 0;
+    Arrays.fill(firstOfName, 0, keys.size(), NONE);
+    Arrays.fill(lastOfName, 0, keys.size(), NONE);
+    for (int row = 0; row < rows; row++) {
+      if (quantities[row] == 0) {
+        continue;
+      }
+      nameIds[target] = nameIds[row];
+      keyIds[target] = keyIds[row];
+      unitIds[target] = unitIds[row];
+      quantities[target] = quantities[row];
+      prices[target] = prices[row];
+      expiryDays[target] = expiryDays[row];
+      link(target, keyIds[target]); // Rows added later come later, like when they were added
+      target++;
+    }
+    rows = target;
+  }
+
+  private void growRows(int capacity) {
+    nameIds = Arrays.copyOf(nameIds, capacity);
+    keyIds = Arrays.copyOf(keyIds, capacity);
+    unitIds = Arrays.copyOf(unitIds, capacity);
+    quantities = Arrays.copyOf(quantities, capacity);
+    prices = Arrays.copyOf(prices, capacity);
+    expiryDays = Arrays.copyOf(expiryDays, capacity);
+    nextOfName = Arrays.copyOf(nextOfName, capacity);
+  }
+
+  /**
+   * Flyweight view of one batch. The cursor is moved over the rows of the store, and reads the
+   * fields of the row it is on straight from the arrays.
+   */
+  public final class Batch {
+    private int row = NONE;
+
+    private Batch() {
+    }
+
+    /**
+     * Moves back before the first row, to start a new scan.
+     */
+    public void reset() {
+      row = NONE;
+    }
+
+    /**
+     * Moves to the next batch in the store.
+     *
+     * @return true if there is one, false once the last batch has been passed.
+     */
+    public boolean next() {
+      do {
+        row++;
+      } while (row < rows && quantities[row] == 0);
+      return row < rows;
+    }
+
+    /**
+     * Moves to the batch of an ingredient that is used first.
+     *
+     * @param name the name of the ingredient, case is ignored.
+     * @return true if the ingredient has a batch, false otherwise.
+     */
+    public boolean moveToFirst(String name) {
+      int key = keys.idOf(name);
+      row = key < 0 ? NONE : firstOfName[key];
+      return row != NONE;
+    }
+
+    /**
+     * Moves to the batch of the same ingredient that is used next.
+     *
+     * @return true if there is one, false otherwise.
+     */
+    public boolean nextOfSameName() {
+      row = nextOfName[row];
+      while (row != NONE && quantities[row] == 0) {
+        row = nextOfName[row];
+      }
+      return row != NONE;
+    }
+
+    public String name() {
+      return spellings.word(nameIds[row]);
+    }
+
+    public String unit() {
+      return units.word(unitIds[row]);
+    }
+
+    public int numberOfUnits() {
+      return quantities[row];
+    }
+
+    public double price() {
+      return prices[row];
+    }
+
+    public int expiryEpochDay() {
+      return expiryDays[row];
+    }
+
+    /**
+     * Gets the expiration date. Unlike the other fields this allocates a date, prefer
+     * {@link #expiryEpochDay()} in scans.
+     *
+     * @return the expiration date.
+     */
+    public LocalDate expirationDate() {
+      return LocalDate.ofEpochDay(expiryDays[row]);
+    }
+  }
+}
@@ -0,0 +1,271 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Writes synthetic ingredient and recipe files for load testing, in the formats of
+ * {@link IngredientLog} and {@link RecipeManager#writeRecipeToFile}.
+ *
+ * <p>The files are written one record at a time, so files of any size are written with the
+ * same small amount of memory. The same seed always gives the same files. Some ingredients
+ * are much more popular than others: names are picked from a Zipf distribution, so the first
+ * names get most of the batches and are used by most recipes. Every name has its own unit,
+ * and the expiry dates are spread around the reference date, with a few batches already
+ * expired and a long tail of batches that keep for a long time.
+ */
+public class DatasetGenerator {
+  private static final String[] FOODS = {
+      "Flour", "Sugar", "Milk", "Egg", "Butter", "Salt", "Tomato", "Onion", "Garlic", "Rice",
+      "Pasta", "Cheese", "Potato", "Carrot", "Chicken", "Beef", "Apple", "Banana", "Lemon",
+      "Yogurt", "Cream", "Oil", "Vinegar", "Bread", "Oats", "Honey", "Pepper", "Spinach",
+      "Broccoli", "Salmon", "Beans", "Lentils", "Corn", "Mushroom", "Cucumber", "Juice",
+      "Stock", "Chocolate", "Coffee", "Tea"
+  };
+  private static final String[] UNITS = {"Gram", "Liter", "Pieces"};
+  private static final String[] STEPS = {"Chop", "Mix", "Boil", "Fry", "Bake", "Stir", "Whisk"};
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final long seed;
+  private final int distinctIngredients;
+  private final LocalDate referenceDate;
+  private final ZipfSampler popularity;
+
+  /**
+   * Create a new generator.
+   *
+   * @param seed the seed of the random numbers.
+   * @param distinctIngredients the number of ingredient names to pick from.
+   * @param referenceDate the date the expiry dates are spread around, usually today.
+   */
+  public DatasetGenerator(long seed, int distinctIngredients, LocalDate referenceDate) {
+    if (distinctIngredients < 1) {
+      throw new IllegalArgumentException("There must be at least one ingredient name");
+    }
+    this.seed = seed;
+    this.distinctIngredients = distinctIngredients;
+    this.referenceDate = referenceDate;
+    this.popularity = new ZipfSampler(distinctIngredients, 1.0);
+  }
+
+  /**
+   * Gets the name of an ingredient. Ingredient 0 is the most popular one.
+   *
+   * @param id the id of the ingredient.
+   * @return the name.
+   */
+  public static String ingredientName(int id) {
+    String food = FOODS[id % FOODS.length];
+    int variant = id / FOODS.length;
+    return variant == 0 ? food : food + " " + (variant + 1);
+  }
+
+  /**
+   * Gets the unit of an ingredient. An ingredient always has the same unit.
+   *
+   * @param id the id of the ingredient.
+   * @return the unit.
+   */
+  public static String unitOf(int id) {
+    return UNITS[Math.floorMod(Integer.hashCode(id) * 0x9E3779B9, UNITS.length)];
+  }
+
+  /**
+   * Writes an ingredients file.
+   *
+   * @param file the file to write.
+   * @param batches the number of batches.
+   * @throws IOException if the file could not be written.
+   */
+  public void writeIngredients(Path file, long batches) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed);
+    try (Writer writer = open(file)) {
+      for (long i = 0; i < batches; i++) {
+        int id = popularity.sample(random) - 1;
+        String unit = unitOf(id);
+        int units = amount(random, unit);
+        Ingredient ingredient = new Ingredient(ingredientName(id), unit, units,
+            price(random, unit, units), expiryDate(random));
+        writer.write(ingredient.toString());
+        writer.write('\n');
+      }
+    }
+  }
+
+  /**
+   * Writes a recipe file. Every recipe uses 2 to 8 different ingredients.
+   *
+   * @param file the file to write.
+   * @param recipes the number of recipes.
+   * @throws IOException if the file could not be written.
+   */
+  public void writeRecipes(Path file, long recipes) throws IOException {
+    SplittableRandom random = new SplittableRandom(~seed); // Independent of the ingredients
+    int[] ids = new int[8];
+    try (Writer writer = open(file)) {
+      for (long i = 0; i < recipes; i++) {
+        writer.write("Recipe Name: Recipe " + i + "\n");
+        int count = Math.min(random.nextInt(2, 9), distinctIngredients);
+        for (int j = 0; j < count; j++) {
+          ids[j] = distinctSample(random, ids, j);
+          String unit = unitOf(ids[j]);
+          int amount = amount(random, unit) / 4 + 1; // Recipes use part of a batch
+          writer.write("Ingredient: " + ingredientName(ids[j]) + ", Amount: " + amount + " "
+              + unit + ", Price: " + price(random, unit, amount) + "\n");
+        }
+        writer.write("Instructions: " + STEPS[random.nextInt(STEPS.length)] + " "
+            + ingredientName(ids[0]).toLowerCase(Locale.ROOT) + " for " + random.nextInt(1, 60)
+            + " minutes\n");
+        writer.write("Number of people: " + random.nextInt(1, 9) + "\n");
+        writer.write("\n");
+      }
+    }
+  }
+
+  /**
+   * Picks an ingredient that is not among the first ingredients already picked.
+   */
+  private int distinctSample(SplittableRandom random, int[] picked, int count) {
+    while (true) {
+      int id = popularity.sample(random) - 1;
+      boolean taken = false;
+      for (int i = 0; i < count && !taken; i++) {
+        taken = picked[i] == id;
+      }
+      if (!taken) {
+        return id;
+      }
+    }
+  }
+
+  private static int amount(SplittableRandom random, String unit) {
+    return switch (unit) {
+      case "Gram" -> random.nextInt(1, 41) * 50;
+      case "Liter" -> random.nextInt(1, 6);
+      default -> random.nextInt(1, 25);
+    };
+  }
+
+  private static double price(SplittableRandom random, String unit, int amount) {
+    double perUnit = switch (unit) {
+      case "Gram" -> 0.02 + random.nextDouble() * 0.2;
+      case "Liter" -> 10 + random.nextDouble() * 40;
+      default -> 2 + random.nextDouble() * 20;
+    };
+    return Math.max(1, Math.round(perUnit * amount * 100)) / 100.0; // Prices are never 0
+  }
+
+  /**
+   * Picks an expiry date: a few batches are expired, most expire within two months and the
+   * rest keep for up to two years.
+   */
+  private LocalDate expiryDate(SplittableRandom random) {
+    double kind = random.nextDouble();
+    if (kind < 0.1) {
+      return referenceDate.minusDays(random.nextInt(1, 31));
+    } else if (kind < 0.8) {
+      return referenceDate.plusDays(random.nextInt(0, 61));
+    }
+    return referenceDate.plusDays(random.nextInt(61, 731));
+  }
+
+  private static Writer open(Path file) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file),
+        StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
+  /**
+   * Samples ranks from 1 to n where rank k is picked with a probability proportional to
+   * 1 / k^exponent. Uses rejection-inversion sampling (Hörmann and Derflinger), which needs
+   * no table, so the number of ranks does not affect the memory used.
+   */
+  static final class ZipfSampler {
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    ZipfSampler(int n, double exponent) {
+      this.n = n;
+      this.exponent = exponent;
+      this.hIntegralX1 = hIntegral(1.5) - 1.0;
+      this.hIntegralN = hIntegral(n + 0.5);
+      this.s = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2.0));
+    }
+
+    int sample(SplittableRandom random) {
+      while (true) {
+        double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+        double x = hIntegralInverse(u);
+        int k = (int) (x + 0.5);
+        k = Math.max(1, Math.min(n, k));
+        if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+          return k;
+        }
+      }
+    }
+
+    private double h(double x) {
+      return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+      double logX = Math.log(x);
+      return helper2((1.0 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+      double t = Math.max(x * (1.0 - exponent), -1.0);
+      return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, accurate near 0
+    private static double helper1(double x) {
+      return Math.abs(x) > 1e-8
+          ? Math.log1p(x) / x
+          : 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x, accurate near 0
+    private static double helper2(double x) {
+      return Math.abs(x) > 1e-8
+          ? Math.expm1(x) / x
+          : 1.0 + x * 0.5 * (1.0 + x / 3.0 * (1.0 + 0.25 * x));
+    }
+  }
+
+  /**
+   * Writes a dataset from the command line.
+   *
+   * <p>Usage: {@code DatasetGenerator <ingredients|recipes> <file> <count> [seed] [names]}
+   *
+   * @param args the kind of file, the file, the number of records, the seed and the number of
+   *             ingredient names.
+   * @throws IOException if the file could not be written.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.out.println("Usage: DatasetGenerator <ingredients|recipes> <file> <count> "
+          + "[seed] [names]");
+      return;
+    }
+    long count = Long.parseLong(args[2]);
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : 1003;
+    int names = args.length > 4 ? Integer.parseInt(args[4]) : 10_000;
+    DatasetGenerator generator = new DatasetGenerator(seed, names, LocalDate.now());
+    switch (args[0]) {
+      case "ingredients" -> generator.writeIngredients(Path.of(args[1]), count);
+      case "recipes" -> generator.writeRecipes(Path.of(args[1]), count);
+      default -> System.out.println("Unknown kind of file: " + args[0]);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Splits a file into chunks at record boundaries and parses the chunks in parallel.
+ * A record boundary is the start of a line that begins with a given prefix, so every chunk
+ * holds whole records and can be parsed on its own.
+ */
+public class FileChunker {
+  // Chunks are memory-mapped, and a single mapping can not be larger than 2 GB
+  private static final long MAX_CHUNK_SIZE = 1L << 30;
+  private static final int SCAN_SIZE = 1 << 16;
+
+  // Private constructor to prevent instantiation
+  private FileChunker() {
+    throw new UnsupportedOperationException("Utility class");
+  }
+
+  /**
+   * Parses the chunks of a file in parallel.
+   *
+   * @param filePath the path of the file.
+   * @param start the position in the file to start from.
+   * @param parallelism the number of threads to parse with.
+   * @param recordStart the text a line must start with to begin a new record, empty if every
+   *                    line is a record.
+   * @param parser parses the content of one chunk.
+   * @param <T> the result of parsing a chunk.
+   * @return the result of each chunk, in the order of the file.
+   * @throws IOException if the file could not be read.
+   */
+  public static <T> List<T> parseInParallel(String filePath, long start, int parallelism,
+                                            byte[] recordStart,
+                                            Function<ByteBuffer, T> parser) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+      long[] bounds = split(channel, start, parallelism, recordStart);
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+          long length = bounds[i + 1] - bounds[i];
+          if (length > Integer.MAX_VALUE) {
+            throw new IOException("Record is too large to be mapped in " + filePath);
+          }
+          MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], length);
+          tasks.add(pool.submit(() -> parser.apply(chunk)));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<T> task : tasks) {
+          results.add(task.join());
+        }
+        return results;
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Finds the chunk boundaries of a file.
+   *
+   * @return the start of every chunk followed by the end of the file.
+   */
+  private static long[] split(FileChannel channel, long start, int parallelism,
+                              byte[] recordStart) throws IOException {
+    long size = channel.size();
+    long length = Math.max(size - start, 0);
+    long chunkCount = Math.max(parallelism, (length + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(start);
+    for (long i = 1; i < chunkCount; i++) {
+      long target = Math.max(start + length * i / chunkCount, bounds.get(bounds.size() - 1));
+      long boundary = nextRecordStart(channel, target, size, recordStart);
+      if (boundary > bounds.get(bounds.size() - 1) && boundary < size) {
+        bounds.add(boundary);
+      }
+    }
+    bounds.add(Math.max(size, start));
+    return bounds.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Finds the first record that starts at or after a position.
+   *
+   * @return the position of the record, or the size of the file if there is none.
+   */
+  private static long nextRecordStart(FileChannel channel, long from, long size,
+                                      byte[] recordStart) throws IOException {
+    ByteBuffer window = ByteBuffer.allocate(SCAN_SIZE);
+    long position = Math.max(from - 1, 0); // A line starts right after a line break
+    while (position < size) {
+      window.clear();
+      int read = channel.read(window, position);
+      if (read <= 0) {
+        break;
+      }
+      int next = read;
+      for (int i = 0; i < read; i++) {
+        if (window.get(i) != '\n') {
+          continue;
+        }
+        if (i + 1 + recordStart.length > read) {
+          if (position + read >= size) {
+            return size; // The record would not fit before the end of the file
+          }
+          next = Math.max(i, 1); // Read the rest of the line again in the next window
+          break;
+        }
+        if (startsWith(window, i + 1, recordStart)) {
+          return position + i + 1;
+        }
+      }
+      position += next;
+    }
+    return size;
+  }
+
+  private static boolean startsWith(ByteBuffer buffer, int from, byte[] prefix) {
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer.get(from + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
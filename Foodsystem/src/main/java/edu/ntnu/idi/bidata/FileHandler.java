@@ -8,7 +8,13 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -70,6 +76,35 @@ public class FileHandler {
     }
   }
 
+  /**
+   * Replaces a file with another file in a way that survives a crash: the new content is
+   * forced to disk first, and then renamed over the old file in one atomic step, so the file
+   * always holds either the old or the new content.
+   *
+   * @param source the file with the new content, it is gone afterwards.
+   * @param target the file to replace.
+   * @throws IOException if the file could not be replaced.
+   */
+  public static void replaceAtomically(Path source, Path target) throws IOException {
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      logger.log(Level.WARNING, "Atomic move not supported, replacing {0} in place", target);
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    Path directory = target.toAbsolutePath().getParent();
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true); // Makes the rename itself durable
+    } catch (IOException e) {
+      // Some systems can not open or force a directory, the rename is then left to the system
+      logger.log(Level.FINE, "Could not force directory {0}", directory);
+    }
+  }
+
   /**
    * Read content from a file.
    *
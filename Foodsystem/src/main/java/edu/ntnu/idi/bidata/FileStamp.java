@@ -0,0 +1,26 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.File;
+
+/**
+ * The modification time and size of a file, used to tell if a file has changed since it was read.
+ *
+ * @param lastModified the time the file was last modified, in milliseconds.
+ * @param size the size of the file in bytes.
+ */
+public record FileStamp(long lastModified, long size) {
+
+  /**
+   * Gets the current stamp of a file.
+   *
+   * @param filePath the path of the file.
+   * @return the stamp of the file, or null if the file does not exist.
+   */
+  public static FileStamp of(String filePath) {
+    File file = new File(filePath);
+    if (!file.exists()) {
+      return null;
+    }
+    return new FileStamp(file.lastModified(), file.length());
+  }
+}
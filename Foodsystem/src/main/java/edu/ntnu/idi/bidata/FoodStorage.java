@@ -3,63 +3,235 @@ package edu.ntnu.idi.bidata;
 import edu.ntnu.idi.bidata.exceptions.IngredientNotFound;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class for storing food ingredients.
+ *
+ * <p>The storage can be used from several threads at once. Changes to an ingredient hold the
+ * lock of its name, one of {@value #LOCK_STRIPES} locks the names are spread over, so changes to
+ * different ingredients mostly run in parallel while the check and the change of a single
+ * ingredient are atomic. Loading and compacting the whole file hold the storage lock
+ * exclusively, the other changes share it.
+ *
+ * <p>The batches of an ingredient are used first expired, first out, see
+ * {@link IngredientStock}. Removing units takes them from the batch that expires first and goes
+ * on to the next batches if that batch has fewer units, and the total in stock of every
+ * ingredient is kept up to date as batches are added and used.
  */
 public class FoodStorage {
   private static final Logger logger = Logger.getLogger(FoodStorage.class.getName());
   //Logger to log errors instead of exception as it is more informative and easier to read.
-  private final List<Ingredient> ingredients;
-  //List of ingredients, this is where we store the ingredients.
+  private static final int LOCK_STRIPES = 64;
+  //Number of locks the ingredient names are spread over.
+  private final Map<String, IngredientStock> ingredientsByName;
+  //Batches of each ingredient, keyed by the lower-case name so lookups are a single hash probe.
+  private volatile List<Ingredient> sortedView;
+  //Sorted copy of all ingredients, rebuilt lazily after the storage changes.
+  private final NavigableMap<Long, Set<Ingredient>> ingredientsByExpiry =
+      new ConcurrentSkipListMap<>();
+  //Batches by the epoch day they expire, so expiry queries only visit the matching days.
+  //Ingredients are compared by identity, so a batch is found in its day with a single hash probe.
+  private final AtomicInteger batchCount = new AtomicInteger();
+  //Number of batches in storage.
+  private final ReentrantLock[] nameLocks = new ReentrantLock[LOCK_STRIPES];
+  //Locks guarding the batches of the names that hash to them.
+  private final ReadWriteLock storageLock = new ReentrantReadWriteLock();
+  //Shared by changes to single ingredients, held exclusively while the whole storage changes.
+  private volatile IngredientLog log;
+  //Log of the file the ingredients were loaded from.
+  private volatile StorageFormat storageFormat = StorageFormat.TEXT;
+  //Format the ingredients file is compacted into.
+  private volatile int loadParallelism = 1;
+  //Number of threads used to parse the ingredients file.
+  private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
+  //Listeners that are told when the ingredients change.
+  private volatile boolean loading;
+  //True while a file is loaded, the listeners are told once the whole file is loaded.
+  private volatile BkTree fuzzyNames;
+  //Names of the ingredients for lookups that allow typos, built on the first such lookup.
+  private final Path directory;
+  //Directory of the ingredients file, or null to keep it on the class path.
 
   /**
-   * Constructor for FoodStorage and initializing ingredients list.
+   * Constructor for FoodStorage and initializing the ingredient index.
    */
   public FoodStorage() {
-    ingredients = new ArrayList<>(); //Creating a new arraylist of ingredients.
+    this(null);
+  }
 
+  /**
+   * Constructor for a FoodStorage that keeps the ingredients file in a directory instead of on
+   * the class path.
+   *
+   * @param directory the directory of the ingredients file, or null for the class path.
+   */
+  public FoodStorage(Path directory) {
+    this.directory = directory;
+    ingredientsByName = new ConcurrentHashMap<>(); //Creating a new index of ingredients.
+    for (int i = 0; i < nameLocks.length; i++) {
+      nameLocks[i] = new ReentrantLock();
+    }
   }
 
   /**
-   * Gets the list of ingredients.
+   * Gets the list of ingredients, sorted by name.
    *
-   * @return the list of ingredients.
+   * @return an unmodifiable sorted list of the ingredients.
    */
 
   public List<Ingredient> getIngredients() {
-    return ingredients;
+    List<Ingredient> view = sortedView;
+    if (view != null) {
+      return view;
+    }
+    storageLock.writeLock().lock(); // Nothing may change while the batches are copied
+    try {
+      if (sortedView == null) {
+        List<Ingredient> all = new ArrayList<>(batchCount.get());
+        ingredientsByName.values().forEach(stock -> all.addAll(stock.inOrder()));
+        all.sort(Comparator.comparing(Ingredient::getName)); // Keeps the order within each name
+        sortedView = Collections.unmodifiableList(all);
+      }
+      return sortedView;
+    } finally {
+      storageLock.writeLock().unlock();
+    }
   }
 
   /**
    * Gets the ingredient by name. This the function used to get the ingredient info. in the menu.
    *
    * @param name the name of the ingredient.
-   * @return the ingredient info.
+   * @return the ingredient info of the batch that is used first, the one expiring first.
    */
 
   public IngredientInfo getIngredients(String name) {
-    return ingredients.stream() //Stream of ingredients
-        .filter(ingredient -> ingredient.getName().equalsIgnoreCase(name))
-        .findFirst()
-        .map(ingredient -> new IngredientInfo(ingredient.getName(),
-            ingredient.getNumberOfItems(), ingredient.getUnit(), ingredient.getPrice()))
-        .orElse(null);
+    String key = key(name);
+    Ingredient ingredient;
+    ReentrantLock nameLock = lockFor(key);
+    nameLock.lock();
+    try {
+      IngredientStock stock = ingredientsByName.get(key);
+      if (stock == null) {
+        return null;
+      }
+      ingredient = stock.first();
+    } finally {
+      nameLock.unlock();
+    }
+    return new IngredientInfo(ingredient.getName(), ingredient.getNumberOfItems(),
+        ingredient.getUnit(), ingredient.getPrice());
+  }
+
+  /**
+   * Gets how much of an ingredient is in stock over all its batches. Batches in units of the
+   * same dimension are summed, so 1 Liter and 500 Milliliter are 1500 Milliliter. The total is
+   * kept up to date as batches are added and used, so this does not look at the batches.
+   *
+   * @param name the name of the ingredient.
+   * @return the amount of the dimension of the batch that is used first, in the unit of that
+   *     batch or in the base unit if it is not a whole number of it, with the price of that
+   *     batch, or null if the ingredient is not in storage.
+   */
+  public IngredientInfo getAvailable(String name) {
+    String key = key(name);
+    ReentrantLock nameLock = lockFor(key);
+    nameLock.lock();
+    try {
+      IngredientStock stock = ingredientsByName.get(key);
+      return stock == null ? null : stock.total();
+    } finally {
+      nameLock.unlock();
+    }
+  }
+
+  /**
+   * Gets an ingredient by a name that may be spelled a little differently, like "tomatos" for
+   * "tomatoes", see {@link #findClosestName(String, int)}.
+   *
+   * @param name the name of the ingredient.
+   * @param maxDistance the largest number of letters that may differ.
+   * @return the ingredient info of the batch that is used first, or null if no ingredient in
+   *     storage has a name that close.
+   */
+  public IngredientInfo getIngredients(String name, int maxDistance) {
+    String closest = findClosestName(name, maxDistance);
+    return closest == null ? null : getIngredients(closest);
+  }
+
+  /**
+   * Finds the ingredient in storage with the name closest to a name. The distance between two
+   * names is the number of letters that have to be inserted, deleted or changed to turn one
+   * into the other, ignoring case. The names are looked up in a {@link BkTree}, which is built
+   * the first time and kept up to date after that.
+   *
+   * @param name the name.
+   * @param maxDistance the largest number of letters that may differ, 0 to only match the name.
+   * @return the lower-case name of the ingredient, or null if no ingredient has a name that close.
+   */
+  public String findClosestName(String name, int maxDistance) {
+    String key = key(name);
+    if (ingredientsByName.containsKey(key)) {
+      return key;
+    }
+    return maxDistance <= 0 ? null : fuzzyNames().closest(key, maxDistance);
+  }
+
+  private BkTree fuzzyNames() {
+    BkTree names = fuzzyNames;
+    if (names != null) {
+      return names;
+    }
+    storageLock.writeLock().lock(); // No names may be added while the tree is built
+    try {
+      if (fuzzyNames == null) {
+        BkTree tree = new BkTree();
+        ingredientsByName.keySet().forEach(tree::add);
+        fuzzyNames = tree;
+      }
+      return fuzzyNames;
+    } finally {
+      storageLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the names of the ingredients in storage.
+   *
+   * @return the lower-case names of the ingredients.
+   */
+  public Set<String> getIngredientNames() {
+    return Collections.unmodifiableSet(ingredientsByName.keySet());
   }
 
   /**
@@ -69,7 +241,7 @@ public class FoodStorage {
    * @return true if the ingredient exists, false otherwise.
    */
   public boolean ingredientExists(String name) {
-    return ingredients.stream().anyMatch(ingredient -> ingredient.getName().equalsIgnoreCase(name));
+    return ingredientsByName.containsKey(key(name));
   }
 
   /**
@@ -78,7 +250,95 @@ public class FoodStorage {
    * @param ingredient the ingredient to be added.
    */
   public void addIngredientDirectly(Ingredient ingredient) {
-    ingredients.add(ingredient);
+    String key = key(ingredient.getName());
+    lockName(key);
+    try {
+      addBatch(key, ingredient);
+    } finally {
+      unlockName(key);
+    }
+    fireIngredientChanged(ingredient.getName());
+  }
+
+  /**
+   * Adds a batch. The caller holds the lock of the name.
+   */
+  private void addBatch(String key, Ingredient ingredient) {
+    ingredientsByName.computeIfAbsent(key, this::newStock).add(ingredient);
+    addToExpiryIndex(ingredient);
+    batchCount.incrementAndGet();
+    sortedView = null;
+  }
+
+  private IngredientStock newStock(String key) {
+    BkTree names = fuzzyNames;
+    if (names != null) {
+      names.add(key);
+    }
+    return new IngredientStock();
+  }
+
+  /**
+   * Adds a listener that is told when the ingredients change.
+   *
+   * @param listener the listener.
+   */
+  public void addListener(StorageListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener.
+   *
+   * @param listener the listener.
+   */
+  public void removeListener(StorageListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Tells the listeners that an ingredient changed. Never called while a name is locked,
+   * as the listeners may read other ingredients.
+   */
+  private void fireIngredientChanged(String name) {
+    if (!loading) {
+      listeners.forEach(listener -> listener.ingredientChanged(this, name));
+    }
+  }
+
+  private void fireIngredientsReloaded() {
+    if (!loading) {
+      listeners.forEach(listener -> listener.ingredientsReloaded(this));
+    }
+  }
+
+  /**
+   * Gets the index key of an ingredient name. Names are compared without regard to case.
+   *
+   * @param name the name of the ingredient.
+   * @return the lower-case name.
+   */
+  static String key(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  private ReentrantLock lockFor(String key) {
+    int hash = key.hashCode();
+    return nameLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+  }
+
+  /**
+   * Locks an ingredient name for a change. The storage lock is shared first, so a change never
+   * runs while the whole storage is loaded or compacted.
+   */
+  private void lockName(String key) {
+    storageLock.readLock().lock();
+    lockFor(key).lock();
+  }
+
+  private void unlockName(String key) {
+    lockFor(key).unlock();
+    storageLock.readLock().unlock();
   }
 
 
@@ -95,125 +355,415 @@ public class FoodStorage {
   public boolean addIngredient(String name, String unit, int numberOfUnits, double price,
                                LocalDate expirationDate) {
     // Validate the input parameters
-    if (name.isEmpty() || unit == null || numberOfUnits <= 0 || price <= 0
-        || expirationDate == null) {
+    if (validate(name, unit, numberOfUnits, price, expirationDate) != null) {
       return false; // Return false if any validation fails
     }
 
     // Create a new ingredient and add it to the list
     Ingredient ingredient = new Ingredient(name, unit, numberOfUnits, price, expirationDate);
-    ingredients.add(ingredient);
-    saveIngredientsToFile("ingredients.txt", ingredient); // Save the ingredient to the file
+    String key = key(name);
+    lockName(key); // The file gets the changes to a name in the order they were made
+    try {
+      addBatch(key, ingredient);
+      saveIngredientsToFile("ingredients.txt", ingredient); // Save the ingredient to the file
+    } finally {
+      unlockName(key);
+    }
+    fireIngredientChanged(name);
+    compactIfNeeded();
     return true; // Return true if the ingredient is added successfully
   }
 
   /**
-   * Removes ingredients from the list of ingredients.
+   * Checks the fields of a new batch.
+   *
+   * @return why the batch is not valid, or null if it is valid.
    */
-  public boolean removeIngredient(String name, int unitsToRemove) {
-    String filename = "ingredients.txt";
-    String regex = "name='(.*?)'";
-    Pattern pattern = Pattern.compile(regex);
-    FoodStorage foodStorage = new FoodStorage();
-    foodStorage.loadIngredientsFromFile(filename);
+  private static String validate(String name, String unit, int numberOfUnits, double price,
+                                 LocalDate expirationDate) {
+    if (name == null || name.isEmpty()) {
+      return "Name is empty";
+    } else if (unit == null || unit.isEmpty()) {
+      return "Unit is empty";
+    } else if (name.contains("\n") || unit.contains("\n")) {
+      return "Name or unit spans several lines";
+    } else if (numberOfUnits <= 0) {
+      return "Number of units must be positive";
+    } else if (price <= 0) {
+      return "Price must be positive";
+    } else if (expirationDate == null) {
+      return "Expiration date is missing";
+    }
+    return null;
+  }
 
-    if (name.isEmpty()) {
-      return false;
+  /**
+   * Adds a number of ingredients at once. Every batch is validated like in
+   * {@link #addIngredient}, and the valid batches are appended to the ingredients file in one
+   * write that is forced to disk once, instead of opening the file for every batch.
+   *
+   * @param ingredients the batches to add, in order.
+   * @return the number of batches added and the batches rejected, numbered from 1.
+   */
+  public ImportResult addIngredients(Collection<Ingredient> ingredients) {
+    List<Ingredient> rows = new ArrayList<>(ingredients);
+    List<Integer> rowNumbers = new ArrayList<>(rows.size());
+    for (int i = 1; i <= rows.size(); i++) {
+      rowNumbers.add(i);
     }
+    return importRows(rows, rowNumbers, new ArrayList<>());
+  }
 
-    if (!ingredientExists(name)) {
-      return false;
+  /**
+   * Imports ingredients from a CSV file with the columns name, unit, number of units, price and
+   * expiration date (yyyy-MM-dd), for example {@code Milk,Liter,2,25.5,2024-12-01}. A field
+   * holding a comma is put in double quotes, like {@code "Tomatoes, canned"}, and a double quote
+   * in a quoted field is written twice. Every row is on a single line. A first line starting
+   * with "name" is taken as a header and skipped. Rows that can not be read or are not valid
+   * are rejected, the others are added as with {@link #addIngredients}.
+   *
+   * @param csvFile the path of the CSV file.
+   * @return the number of batches added and the rows rejected, numbered by line.
+   * @throws IOException if the file could not be read.
+   */
+  public ImportResult importIngredientsFromCsv(Path csvFile) throws IOException {
+    List<Ingredient> rows = new ArrayList<>();
+    List<Integer> rowNumbers = new ArrayList<>();
+    List<ImportResult.Reject> rejects = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.isBlank()
+            || lineNumber == 1 && line.trim().toLowerCase(Locale.ROOT).startsWith("name")) {
+          continue;
+        }
+        List<String> columns = splitCsvLine(line);
+        if (columns == null) {
+          rejects.add(new ImportResult.Reject(lineNumber, "Quoted field is not closed"));
+          continue;
+        }
+        if (columns.size() != 5) {
+          rejects.add(new ImportResult.Reject(lineNumber,
+              "Expected 5 columns, put fields holding a comma in double quotes"));
+          continue;
+        }
+        try {
+          rows.add(new Ingredient(columns.get(0).trim(), columns.get(1).trim(),
+              Integer.parseInt(columns.get(2).trim()), Double.parseDouble(columns.get(3).trim()),
+              LocalDate.parse(columns.get(4).trim())));
+          rowNumbers.add(lineNumber);
+        } catch (NumberFormatException | DateTimeParseException e) {
+          rejects.add(new ImportResult.Reject(lineNumber, "Could not read " + e.getMessage()));
+        }
+      }
     }
+    return importRows(rows, rowNumbers, rejects);
+  }
 
-    URL resourceUrl = getClass().getClassLoader().getResource(filename);
-    if (resourceUrl == null) {
-      logger.log(Level.SEVERE, "Resource path is null");
-      return false;
+  /**
+   * Splits a line of a CSV file into its fields. A field in double quotes may hold commas, and
+   * two double quotes in it stand for one.
+   *
+   * @param line the line.
+   * @return the fields, or null if a quoted field is not closed.
+   */
+  private static List<String> splitCsvLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"' && field.toString().isBlank()) {
+        field.setLength(0); // Spaces before the quote are not part of the field
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (quoted) {
+      return null;
     }
+    fields.add(field.toString());
+    return fields;
+  }
 
-    String filePath = FileHandler.getResourcePath("ingredients.txt");
+  /**
+   * Validates rows and adds the valid ones to memory and to the ingredients file. The storage
+   * is locked for the whole import, so the file gets the batches in the order they were added.
+   */
+  private ImportResult importRows(List<Ingredient> rows, List<Integer> rowNumbers,
+                                  List<ImportResult.Reject> rejects) {
+    List<Ingredient> valid = new ArrayList<>(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      Ingredient row = rows.get(i);
+      String reason = row == null ? "Row is missing" : validate(row.getName(), row.getUnit(),
+          row.getNumberOfItems(), row.getPrice(), row.getExpirationDate());
+      if (reason == null) {
+        valid.add(row);
+      } else {
+        rejects.add(new ImportResult.Reject(rowNumbers.get(i), reason));
+      }
+    }
+    rejects.sort(Comparator.comparingInt(ImportResult.Reject::row));
 
-    try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-          String nameIngredient = matcher.group(1);
-          if (nameIngredient.equalsIgnoreCase(name)) {
-            removeLineFromFile(line, unitsToRemove);
-            return true;
-          }
+    Set<String> changed = new LinkedHashSet<>();
+    storageLock.writeLock().lock();
+    try {
+      for (Ingredient ingredient : valid) {
+        String key = key(ingredient.getName());
+        lockName(key); // Single lookups only take the lock of the name
+        try {
+          addBatch(key, ingredient);
+        } finally {
+          unlockName(key);
         }
+        changed.add(ingredient.getName());
+      }
+      if (!valid.isEmpty()) {
+        saveIngredientsToFile("ingredients.txt", valid);
+      }
+    } finally {
+      storageLock.writeLock().unlock();
+    }
+    changed.forEach(this::fireIngredientChanged);
+    compactIfNeeded();
+    return new ImportResult(valid.size(), List.copyOf(rejects));
+  }
+
+  /**
+   * Removes ingredients from the list of ingredients and from the ingredients file.
+   * The removal is appended to the file as a single record instead of rewriting it.
+   * Units are taken from the batches that expire first.
+   *
+   * @param name the name of the ingredient.
+   * @param unitsToRemove the number of units to remove, 0 removes the batch that expires first.
+   * @return true if the ingredient was removed, false if it is missing or has fewer units.
+   */
+  public boolean removeIngredient(String name, int unitsToRemove) {
+    if (name.isEmpty()) {
+      return false;
+    }
+
+    refreshIngredientsFromFile("ingredients.txt");
+    String key = key(name);
+    boolean removed;
+    lockName(key);
+    try {
+      if (!ingredientExists(name)) {
+        return false;
+      }
+      removed = removeUnits(key, unitsToRemove);
+      if (removed) {
+        writeThrough(target -> unitsToRemove == 0
+            ? target.appendRemove(name)
+            : target.appendDecrement(name, unitsToRemove));
+      }
+    } finally {
+      unlockName(key);
+    }
+    if (removed) {
+      fireIngredientChanged(name);
+      compactIfNeeded();
+    }
+    return removed;
+  }
+
+  /**
+   * Takes units of an ingredient, but only if there are that many units in stock. The units are
+   * taken from the batches that expire first, and batches that are used up are removed.
+   * Checking the stock and taking the units is atomic, so two threads can never take the same
+   * units. The change is written through to the loaded ingredients file.
+   *
+   * @param name the name of the ingredient.
+   * @param units the number of units to take in the unit of the batch that expires first,
+   *     at least 1. They are taken from every batch in a unit of the same dimension.
+   * @return true if the units were taken, false if the ingredient is missing or short.
+   */
+  public boolean takeIngredient(String name, int units) {
+    if (units <= 0) {
+      throw new IllegalArgumentException("Units must be at least 1");
+    }
+    String key = key(name);
+    lockName(key);
+    try {
+      if (!removeUnits(key, units)) {
+        return false;
       }
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Error processing file", e);
+      writeThrough(target -> target.appendDecrement(name, units));
+    } finally {
+      unlockName(key);
+    }
+    fireIngredientChanged(name);
+    compactIfNeeded();
+    return true;
+  }
+
+  /**
+   * Removes units of an ingredient in memory, taking them from the batches that expire first.
+   * If there are fewer units in stock, nothing is removed.
+   *
+   * @param name the name of the ingredient.
+   * @param unitsToRemove the number of units to remove, 0 removes the batch that expires first.
+   * @return true if the stock was changed, false otherwise.
+   */
+  boolean applyRemoval(String name, int unitsToRemove) {
+    String key = key(name);
+    boolean removed;
+    lockName(key);
+    try {
+      removed = removeUnits(key, unitsToRemove);
+    } finally {
+      unlockName(key);
+    }
+    if (removed) {
+      fireIngredientChanged(name);
+    }
+    return removed;
+  }
+
+  /**
+   * Removes units of an ingredient, first expired, first out. The caller holds the lock of the
+   * name.
+   */
+  private boolean removeUnits(String key, int unitsToRemove) {
+    IngredientStock stock = ingredientsByName.get(key);
+    if (stock == null) {
       return false;
     }
-    return false;
-  }
-
-  /**
-   * Removes a line from a file.
-   *
-   * @param lineToRemove the line to remove.
-   * @param unitsToRemove the number of units to remove.
-   */
-  private void removeLineFromFile(String lineToRemove, int unitsToRemove) {
-
-    String tempFile = "temp.txt"; //Creating a new file
-    String resourcePath = FileHandler.getResourcePath("ingredients.txt");
-    File oldFile = new File(resourcePath); //Creating a new file
-    File newFile = new File(oldFile.getParent(), tempFile); //Creating a new file
-
-    try (BufferedReader br = new BufferedReader(new FileReader(oldFile));
-         PrintWriter pw = new PrintWriter(new FileWriter(newFile))) { //Reading the file
-
-      String currentLine;
-      while ((currentLine = br.readLine()) != null) { //Reading the file line by line
-        //Checking if the line is equal to the line to remove:
-        if (currentLine.equals(lineToRemove)) {
-          //Matching the pattern:
-          Matcher matcher = Pattern.compile("numberOfUnits=(\\d+)").matcher(currentLine);
-          if (matcher.find()) { //Checking if the pattern is found
-            int numberOfUnits = Integer.parseInt(matcher.group(1)); //Getting the number of units
-            //Checking if the number of units is greater than the units to remove:
-            if (numberOfUnits > unitsToRemove) {
-              if (unitsToRemove == 0) { //Checking if the units to remove is 0
-                continue; //Continuing the loop
-              } else { //If the units to remove is not 0
-                //Calculating the new number of units:
-                int newNumberOfUnits = numberOfUnits - unitsToRemove;
-                //Replacing the number of units with the new number of units:
-                currentLine = currentLine.replace("numberOfUnits=" + numberOfUnits,
-                    "numberOfUnits=" + newNumberOfUnits);
-              }
-            }
-          }
-        }
-        pw.println(currentLine); //Printing the line
+    if (unitsToRemove == 0) {
+      removeFromExpiryIndex(stock.removeFirst());
+      batchCount.decrementAndGet();
+    } else if (!stock.consume(unitsToRemove, this::replaceBatch)) {
+      return false;
+    }
+    if (stock.isEmpty()) {
+      ingredientsByName.remove(key);
+      BkTree names = fuzzyNames;
+      if (names != null) {
+        names.remove(key);
       }
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Error processing file", e);
-      return;
     }
+    sortedView = null;
+    return true;
+  }
+
+  /**
+   * Updates the expiry index and the batch count for a batch that was used.
+   *
+   * @param batch the batch.
+   * @param rest the batch with the units that are left, or null if the batch was used up.
+   */
+  private void replaceBatch(Ingredient batch, Ingredient rest) {
+    removeFromExpiryIndex(batch);
+    if (rest == null) {
+      batchCount.decrementAndGet();
+    } else {
+      addToExpiryIndex(rest);
+    }
+  }
+
+  private void addToExpiryIndex(Ingredient batch) {
+    ingredientsByExpiry.computeIfAbsent(batch.getExpirationDate().toEpochDay(),
+        day -> ConcurrentHashMap.newKeySet()).add(batch);
+  }
+
+  private void removeFromExpiryIndex(Ingredient batch) {
+    // Days left empty are only dropped while the storage is locked exclusively, so a batch is
+    // never added to a day that is being dropped.
+    ingredientsByExpiry.get(batch.getExpirationDate().toEpochDay()).remove(batch);
+  }
+
+  /**
+   * Appends a change to the log of the loaded ingredients file. If the file was in sync before,
+   * it still is afterwards, otherwise it is reloaded the next time it is refreshed. The log
+   * tells the two apart while the file is locked, see {@link IngredientLog#isInSync()}.
+   *
+   * @param append appends the change to the log and returns true if it was written.
+   */
+  private void writeThrough(Predicate<IngredientLog> append) {
+    IngredientLog target = log;
+    if (target != null) { // Otherwise the ingredients were not loaded from a file
+      append.test(target);
+    }
+  }
 
-    try (BufferedReader br = new BufferedReader(new FileReader(newFile)); //Reading the file
-         PrintWriter pw = new PrintWriter(new FileWriter(oldFile))) { //Reading the file
+  /**
+   * Compacts the ingredients file once most of its records are no longer needed.
+   */
+  private void compactIfNeeded() {
+    IngredientLog target = log;
+    if (target != null && target.needsCompaction(batchCount.get())) {
+      compactIngredientsFile();
+    }
+  }
 
-      String currentLine;
-      while ((currentLine = br.readLine()) != null) { //Reading the file line by line
-        pw.println(currentLine);
+  /**
+   * Rewrites the loaded ingredients file so it only holds the batches in storage, in the
+   * current storage format.
+   *
+   * @return true if the file was compacted, false otherwise.
+   */
+  public boolean compactIngredientsFile() {
+    storageLock.writeLock().lock();
+    try {
+      IngredientLog loaded = log;
+      if (loaded == null || !loaded.isInSync()) {
+        return false; // Nothing loaded, or the file has changed since
       }
-    } catch (IOException e) { //Catching the exception
-      logger.log(Level.SEVERE, "Error copying file contents", e);
+      ingredientsByExpiry.values().removeIf(Set::isEmpty);
+      List<Ingredient> batches = new ArrayList<>(batchCount.get());
+      // In the order they are used, so a reload puts batches expiring together in the same order
+      ingredientsByName.values().forEach(stock -> batches.addAll(stock.inOrder()));
+      // Another program may have appended since, its records would be lost in the rewrite
+      return loaded.compact(batches, storageFormat, loaded::isInSync);
+    } finally {
+      storageLock.writeLock().unlock();
     }
+  }
 
-    if (!newFile.delete()) { //Checking if the file is deleted
-      logger.log(Level.SEVERE, "Could not delete temporary file: " + newFile.getAbsolutePath());
+  public int getLoadParallelism() {
+    return loadParallelism;
+  }
+
+  /**
+   * Sets the number of threads used to parse the ingredients file when it is loaded.
+   * A parallelism of 1 parses the file on the calling thread.
+   *
+   * @param loadParallelism the number of threads, at least 1.
+   */
+  public void setLoadParallelism(int loadParallelism) {
+    if (loadParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
     }
+    this.loadParallelism = loadParallelism;
+  }
 
+  public StorageFormat getStorageFormat() {
+    return storageFormat;
   }
 
+  /**
+   * Sets the format the ingredients file is written in the next time it is compacted.
+   *
+   * @param storageFormat the storage format.
+   */
+  public void setStorageFormat(StorageFormat storageFormat) {
+    this.storageFormat = storageFormat;
+  }
 
   /**
    * Saves ingredients to a file. Writes line by line; if the file already exists
@@ -222,76 +772,193 @@ public class FoodStorage {
    * @param filename the name of the file to which the ingredients will be written.
    */
   public void saveIngredientsToFile(String filename, Ingredient ingredient) {
-    URL resourceUrl = getClass().getClassLoader().getResource(""); //Getting the resource path
-    if (resourceUrl == null) {
-      logger.log(Level.SEVERE, "Resource path is null"); //Logging the error
-      return;
-    }
+    saveToFile(filename, target -> target.appendAdd(ingredient));
+  }
+
+  /**
+   * Saves a number of ingredients to a file in a single write, which is forced to disk once.
+   *
+   * @param filename the name of the file to which the ingredients will be written.
+   * @param ingredients the ingredients, in the order they were added.
+   */
+  public void saveIngredientsToFile(String filename, Collection<Ingredient> ingredients) {
+    saveToFile(filename, target -> target.appendAll(ingredients));
+  }
 
-    String decodedPath = URLDecoder.decode(resourceUrl.getPath(), StandardCharsets.UTF_8);
-    String filePath = decodedPath + filename;
-    try (PrintWriter writer = new PrintWriter(new FileWriter(filePath, true))) {
-      writer.println(ingredient.toString()); //Writing the ingredient to the file
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Could not save ingredients to file", e);
+  private void saveToFile(String filename, Predicate<IngredientLog> append) {
+    String filePath;
+    if (directory != null) {
+      filePath = directory.resolve(filename).toString();
+    } else {
+      URL resourceUrl = getClass().getClassLoader().getResource(""); //Getting the resource path
+      if (resourceUrl == null) {
+        logger.log(Level.SEVERE, "Resource path is null"); //Logging the error
+        return;
+      }
+      String decodedPath = URLDecoder.decode(resourceUrl.getPath(), StandardCharsets.UTF_8);
+      filePath = decodedPath + filename;
+    }
+    IngredientLog loaded = log;
+    if (loaded != null && loaded.getFilePath().equals(new File(filePath).getAbsolutePath())) {
+      writeThrough(append);
+    } else {
+      append.test(new IngredientLog(filePath));
     }
   }
 
   /**
-   * This method is under development and will be commented when it's finished.
+   * Loads the ingredients from a file, unless they are already loaded and the file has not
+   * changed since. Changes made through this storage are written through to the file,
+   * so the ingredients in memory stay the source of truth between refreshes.
    *
    * @param filename the name of the file you want to load ingredients from.
    */
-  public void loadIngredientsFromFile(String filename) {
-    ingredients.clear();
+  public void refreshIngredientsFromFile(String filename) {
     String filePath;
-    String decodedPath;
     try {
-      filePath = FileHandler.getResourcePath(filename);
-      decodedPath = URLDecoder.decode(filePath, StandardCharsets.UTF_8);
+      filePath = resolveFile(filename);
     } catch (Exception e) {
       throw new IngredientNotFound("No ingredients added yet");
     }
+    if (!isInSync(filePath)) {
+      loadIngredientsFromFile(filename, true);
+    }
+  }
 
-    try (BufferedReader reader = new BufferedReader(new FileReader(decodedPath))) {
-      String regex = "Ingredient\\{name='(.+)', unit='(.+)', numberOfUnits=(\\d+), "
-          + "price=(\\d+\\.\\d+), expirationDate=(\\d{4}-\\d{2}-\\d{2})}";
-      Pattern pattern = Pattern.compile(regex);
-      ingredients.addAll(reader.lines()
-          .map(pattern::matcher)
-          .filter(Matcher::matches)
-          .map(matcher -> new Ingredient(
-              matcher.group(1),
-              matcher.group(2),
-              Integer.parseInt(matcher.group(3)),
-              Double.parseDouble(matcher.group(4)),
-              LocalDate.parse(matcher.group(5))
-          ))
-          .toList());
-    } catch (IOException e) {
-      throw new IngredientNotFound("No ingredients added yet");
+  /**
+   * Gets the path of a file of the storage, creating the file if it does not exist yet.
+   *
+   * @param filename the name of the file.
+   * @return the decoded path of the file.
+   * @throws IOException if the file could not be created.
+   */
+  private String resolveFile(String filename) throws IOException {
+    if (directory == null) {
+      return URLDecoder.decode(FileHandler.getResourcePath(filename), StandardCharsets.UTF_8);
     }
+    Path file = directory.resolve(filename);
+    try {
+      Files.createFile(file);
+    } catch (FileAlreadyExistsException e) {
+      // Loaded as it is
+    }
+    return file.toString();
+  }
 
-    ingredients.sort(Comparator.comparing(Ingredient::getName));
+  /**
+   * Checks if the ingredients in memory match the content of a file.
+   *
+   * @param filePath the path of the file.
+   * @return true if the ingredients were loaded from the file and it has not changed since.
+   */
+  private boolean isInSync(String filePath) {
+    IngredientLog loaded = log;
+    return loaded != null && new File(filePath).getAbsolutePath().equals(loaded.getFilePath())
+        && loaded.isInSync();
+  }
+
+  /**
+   * Loads the ingredients from a file, replacing the ingredients in memory. The records in the
+   * file are replayed in order, see {@link IngredientLog}.
+   *
+   * @param filename the name of the file you want to load ingredients from.
+   */
+  public void loadIngredientsFromFile(String filename) {
+    loadIngredientsFromFile(filename, false);
+  }
+
+  /**
+   * Loads the ingredients from a file while holding the storage lock exclusively.
+   *
+   * @param filename the name of the file you want to load ingredients from.
+   * @param onlyIfChanged true to skip loading if another thread loaded the file in the meantime.
+   */
+  private void loadIngredientsFromFile(String filename, boolean onlyIfChanged) {
+    storageLock.writeLock().lock();
+    try {
+      String decodedPath;
+      try {
+        decodedPath = resolveFile(filename);
+      } catch (Exception e) {
+        clearIngredients();
+        throw new IngredientNotFound("No ingredients added yet");
+      }
+      if (onlyIfChanged && isInSync(decodedPath)) {
+        return;
+      }
+
+      loading = true;
+      try {
+        clearIngredients();
+        IngredientLog ingredientLog = new IngredientLog(new File(decodedPath).getAbsolutePath());
+        try {
+          ingredientLog.replay(this, loadParallelism);
+        } catch (IOException e) {
+          throw new IngredientNotFound("No ingredients added yet");
+        }
+        log = ingredientLog;
+      } finally {
+        loading = false;
+        fireIngredientsReloaded(); // Tell the listeners once, not for every batch in the file
+      }
+    } finally {
+      storageLock.writeLock().unlock();
+    }
   }
 
 
 
   /**
-   * Prints out the ingredients that are expired.
+   * Gets the ingredients that are expired, sorted by name.
+   *
+   * @return the expired ingredients.
    */
   public List<Ingredient> getExpiredGoods() {
-    loadIngredientsFromFile("ingredients.txt"); // Loading the ingredients from the file
-    return ingredients.stream()
-        .filter(ingredient -> ingredient.getExpirationDate().isBefore(LocalDate.now()))
-        .toList();
+    refreshIngredientsFromFile("ingredients.txt"); // Loading the ingredients if the file changed
+    List<Ingredient> expired = new ArrayList<>();
+    ingredientsByExpiry.headMap(LocalDate.now().toEpochDay(), false).values()
+        .forEach(expired::addAll);
+    expired.sort(Comparator.comparing(Ingredient::getName));
+    return expired;
+  }
+
+  /**
+   * Gets the ingredients that are not expired yet, but expire within a period from today,
+   * sorted by expiration date.
+   *
+   * @param period the period from today, today plus the period is included.
+   * @return the ingredients that expire soon.
+   * @throws IllegalArgumentException if the period ends before today.
+   */
+  public List<Ingredient> getExpiringWithin(Period period) {
+    LocalDate today = LocalDate.now();
+    LocalDate last = today.plus(period);
+    if (last.isBefore(today)) {
+      throw new IllegalArgumentException("Period must not end before today: " + period);
+    }
+    refreshIngredientsFromFile("ingredients.txt"); // Loading the ingredients if the file changed
+    List<Ingredient> expiring = new ArrayList<>();
+    ingredientsByExpiry.subMap(today.toEpochDay(), true, last.toEpochDay(), true)
+        .values().forEach(expiring::addAll);
+    return expiring;
   }
 
   /**
    * Clears the ingredients list.
    */
   public void clearIngredients() {
-    ingredients.clear();
+    storageLock.writeLock().lock();
+    try {
+      ingredientsByName.clear();
+      fuzzyNames = null; // Built again when it is next needed
+      ingredientsByExpiry.clear();
+      batchCount.set(0);
+      sortedView = null;
+      log = null; // The ingredients in memory no longer come from a file
+      fireIngredientsReloaded();
+    } finally {
+      storageLock.writeLock().unlock();
+    }
   }
 
 }
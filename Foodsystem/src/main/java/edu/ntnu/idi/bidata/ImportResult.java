@@ -0,0 +1,21 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.List;
+
+/**
+ * The result of importing a batch of ingredients.
+ *
+ * @param imported the number of rows that were added to storage.
+ * @param rejects the rows that were not added, in the order they were given.
+ */
+public record ImportResult(int imported, List<Reject> rejects) {
+
+  /**
+   * A row that was not imported.
+   *
+   * @param row the number of the row, counted from 1. For a file this is the line number.
+   * @param reason why the row was rejected.
+   */
+  public record Reject(int row, String reason) {
+  }
+}
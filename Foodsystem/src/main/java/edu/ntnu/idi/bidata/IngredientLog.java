@@ -0,0 +1,574 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only log of the changes made to a food storage. Every line in the file is one record:
+ * an added batch is written as {@link Ingredient#toString()}, and removals are written as
+ * {@code Decrement{name='..', numberOfUnits=..}} or {@code Remove{name='..'}}. Replaying the
+ * records in order rebuilds the storage, and compaction rewrites the file with only the
+ * batches that are left, so the log does not grow forever.
+ *
+ * <p>When compacted in the {@link StorageFormat#BINARY} format, the batches are written to a
+ * binary snapshot next to the log, and the log starts with a {@code Snapshot{id=..}} record
+ * referring to it. A new snapshot always gets a new file name, so the log refers to a complete
+ * snapshot at any time.
+ *
+ * <p>The log is the journal of the storage: the file is only ever appended to, and compaction
+ * builds the new file next to the log and renames it over the log in one atomic step. After a
+ * crash, replaying the log gives the storage as it was after the last complete record, and
+ * {@link #recover()} repairs what the crash left behind before the log is replayed.
+ *
+ * <p>The methods of a log are synchronized, and every record is appended while holding a lock
+ * on a lock file next to the log, so records written by different threads or programs are never
+ * mixed up. The lock is not taken on the log itself, as compaction renames a new file over it,
+ * and a program waiting for a lock on the old file would then append to a file without a name.
+ * Loading and compaction hold the same lock.
+ */
+public class IngredientLog {
+  private static final Logger logger = Logger.getLogger(IngredientLog.class.getName());
+  private static final Pattern INGREDIENT_PATTERN = Pattern.compile(
+      "Ingredient\\{name='(.+)', unit='(.+)', numberOfUnits=(\\d+), "
+          + "price=(\\d+\\.\\d+), expirationDate=(\\d{4}-\\d{2}-\\d{2})}");
+  private static final Pattern DECREMENT_PATTERN = Pattern.compile(
+      "Decrement\\{name='(.+)', numberOfUnits=(\\d+)}");
+  private static final Pattern REMOVE_PATTERN = Pattern.compile("Remove\\{name='(.+)'}");
+  private static final Pattern SNAPSHOT_PATTERN = Pattern.compile("Snapshot\\{id=(\\d+)}");
+  // The log is never compacted while it is this small, rewriting it would cost more than it saves
+  private static final int MIN_RECORDS_BEFORE_COMPACTION = 1000;
+  // A program can only hold one lock on a file, so appends within the program take turns first
+  private static final Object APPEND_LOCK = new Object();
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  private final String filePath;
+  private int recordCount; // Number of records in the file since it was last compacted
+  private int snapshotId; // Id of the binary snapshot the log refers to, 0 if there is none
+  private FileStamp syncedStamp; // Stamp of the file when it last held only what this log saw
+
+  /**
+   * Create a new log for a file.
+   *
+   * @param filePath the path of the file.
+   */
+  public IngredientLog(String filePath) {
+    this.filePath = filePath;
+  }
+
+  public String getFilePath() {
+    return filePath;
+  }
+
+  /**
+   * Checks if the file only holds what this log replayed, appended and compacted. Another
+   * program appending to the file, or an append that failed, makes the log out of sync until
+   * it is replayed again.
+   *
+   * @return true if nothing else has changed the file since this log last touched it.
+   */
+  public synchronized boolean isInSync() {
+    return syncedStamp != null && syncedStamp.equals(FileStamp.of(filePath));
+  }
+
+  /**
+   * Replays every record in the file into a food storage. Lines that are not records are skipped.
+   *
+   * @param foodStorage the storage to apply the records to.
+   * @throws IOException if the file could not be read.
+   */
+  public void replay(FoodStorage foodStorage) throws IOException {
+    replay(foodStorage, 1);
+  }
+
+  /**
+   * Replays every record in the file into a food storage. With a parallelism above 1 the file
+   * is split into chunks of whole lines that are parsed in parallel, and the parsed records are
+   * then applied in the order of the file, so the result is the same as with a single thread.
+   *
+   * @param foodStorage the storage to apply the records to.
+   * @param parallelism the number of threads to parse the file with.
+   * @throws IOException if the file could not be read.
+   */
+  public synchronized void replay(FoodStorage foodStorage, int parallelism)
+      throws IOException {
+    whileLocked(() -> {
+      repair();
+      replayRecords(foodStorage, parallelism);
+      syncedStamp = FileStamp.of(filePath);
+      deleteUnusedSnapshots();
+      return null;
+    });
+  }
+
+  /**
+   * Replays every record in the file into a food storage without changing anything on disk.
+   * Unlike {@link #replay(FoodStorage)} the file is not repaired and unused snapshots are kept,
+   * for reading a log that this program does not own.
+   *
+   * @param foodStorage the storage to apply the records to.
+   * @throws IOException if the file could not be read.
+   */
+  public synchronized void replayReadOnly(FoodStorage foodStorage) throws IOException {
+    replayRecords(foodStorage, 1);
+  }
+
+  private void replayRecords(FoodStorage foodStorage, int parallelism) throws IOException {
+    recordCount = 0;
+    snapshotId = 0;
+    long recordsStart = 0;
+    try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+      String line = file.readLine();
+      Matcher snapshot = line == null ? null : SNAPSHOT_PATTERN.matcher(line);
+      if (snapshot != null && snapshot.matches()) {
+        snapshotId = Integer.parseInt(snapshot.group(1));
+        List<Ingredient> batches = BinaryIngredientFormat.read(snapshotPath(snapshotId));
+        batches.forEach(foodStorage::addIngredientDirectly);
+        recordCount = batches.size();
+        recordsStart = file.getFilePointer();
+      }
+    }
+
+    if (parallelism <= 1) {
+      try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        reader.skip(recordsStart); // The snapshot record is plain ASCII
+        String line;
+        while ((line = reader.readLine()) != null) {
+          Consumer<FoodStorage> record = parse(line);
+          if (record != null) {
+            record.accept(foodStorage);
+            recordCount++;
+          }
+        }
+      }
+      return;
+    }
+
+    List<List<Consumer<FoodStorage>>> chunks = FileChunker.parseInParallel(filePath,
+        recordsStart, parallelism, new byte[0], IngredientLog::parseChunk);
+    for (List<Consumer<FoodStorage>> chunk : chunks) {
+      chunk.forEach(record -> record.accept(foodStorage));
+      recordCount += chunk.size();
+    }
+  }
+
+  /**
+   * Repairs what a crash may have left behind. A compaction that did not finish leaves a
+   * temporary file, which is deleted as the log itself was never replaced. An append that did
+   * not finish leaves a last line without a line break. If that line is not a whole record it
+   * is cut off, otherwise the line break is added, so the next record starts on a line of its
+   * own. Called before the log is replayed. The log is locked like for an append, so a record
+   * another program is appending or a compaction it is running is never taken for a torn one.
+   *
+   * @throws IOException if the file could not be repaired.
+   */
+  public synchronized void recover() throws IOException {
+    whileLocked(() -> {
+      repair();
+      return null;
+    });
+  }
+
+  private void repair() throws IOException {
+    Files.deleteIfExists(tempPath());
+    try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      finishLastRecord(channel);
+    } catch (NoSuchFileException e) {
+      // Nothing was ever written, so there is nothing to repair
+    }
+  }
+
+  private void finishLastRecord(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long end = size;
+    ByteBuffer window = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    while (end > 0) {
+      int length = (int) Math.min(window.capacity(), end);
+      window.clear().limit(length);
+      channel.read(window, end - length);
+      int i = length - 1;
+      while (i >= 0 && window.get(i) != '\n') {
+        i--;
+      }
+      if (i >= 0) {
+        end = end - length + i + 1;
+        break;
+      }
+      end -= length;
+    }
+    if (end == size) {
+      return;
+    }
+    ByteBuffer tail = ByteBuffer.allocate((int) (size - end));
+    while (tail.hasRemaining() && channel.read(tail, end + tail.position()) >= 0) {
+      // Read the whole last line
+    }
+    String line = new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8).strip();
+    if (parse(line) != null || SNAPSHOT_PATTERN.matcher(line).matches()) {
+      // A whole record, written without a line break by hand or by an older version
+      writeFully(channel.position(size),
+          ByteBuffer.wrap(System.lineSeparator().getBytes(StandardCharsets.UTF_8)));
+    } else {
+      logger.log(Level.WARNING, "Dropping {0} bytes of an unfinished record in {1}",
+          new Object[] {size - end, filePath});
+      channel.truncate(end);
+    }
+    channel.force(true);
+  }
+
+  /**
+   * Deletes the snapshots of the log that it no longer refers to. A crash during compaction
+   * can leave either the new snapshot or the old one behind. Called while the log is locked,
+   * and compaction writes its snapshot while holding the same lock, so a snapshot the log does
+   * not refer to is never one that a compaction is still about to rename the log over.
+   */
+  private void deleteUnusedSnapshots() throws IOException {
+    Path log = Path.of(filePath).toAbsolutePath();
+    Pattern snapshotName = Pattern.compile(Pattern.quote(log.getFileName().toString())
+        + "\\.(\\d+)\\.bin");
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(log.getParent())) {
+      for (Path file : files) {
+        Matcher matcher = snapshotName.matcher(file.getFileName().toString());
+        if (matcher.matches() && Integer.parseInt(matcher.group(1)) != snapshotId) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses the records in a chunk of whole lines.
+   *
+   * @param chunk the content of the chunk.
+   * @return the records in the chunk, in order.
+   */
+  private static List<Consumer<FoodStorage>> parseChunk(ByteBuffer chunk) {
+    List<Consumer<FoodStorage>> records = new ArrayList<>();
+    int lineStart = 0;
+    int end = chunk.limit();
+    for (int i = 0; i <= end; i++) {
+      if (i == end || chunk.get(i) == '\n') {
+        int lineEnd = i > lineStart && chunk.get(i - 1) == '\r' ? i - 1 : i;
+        byte[] bytes = new byte[lineEnd - lineStart];
+        chunk.get(lineStart, bytes);
+        Consumer<FoodStorage> record = parse(new String(bytes, StandardCharsets.UTF_8));
+        if (record != null) {
+          records.add(record);
+        }
+        lineStart = i + 1;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Parses a single record.
+   *
+   * @param line the line containing the record.
+   * @return the change the record makes to a storage, or null if the line is not a record.
+   */
+  private static Consumer<FoodStorage> parse(String line) {
+    Matcher matcher = INGREDIENT_PATTERN.matcher(line);
+    if (matcher.matches()) {
+      Ingredient ingredient = new Ingredient(
+          matcher.group(1),
+          matcher.group(2),
+          Integer.parseInt(matcher.group(3)),
+          Double.parseDouble(matcher.group(4)),
+          LocalDate.parse(matcher.group(5)));
+      return foodStorage -> foodStorage.addIngredientDirectly(ingredient);
+    }
+    matcher = DECREMENT_PATTERN.matcher(line);
+    if (matcher.matches()) {
+      String name = matcher.group(1);
+      int unitsToRemove = Integer.parseInt(matcher.group(2));
+      return foodStorage -> foodStorage.applyRemoval(name, unitsToRemove);
+    }
+    matcher = REMOVE_PATTERN.matcher(line);
+    if (matcher.matches()) {
+      String name = matcher.group(1);
+      return foodStorage -> foodStorage.applyRemoval(name, 0);
+    }
+    return null;
+  }
+
+  /**
+   * Appends a record for an added batch.
+   *
+   * @param ingredient the batch that was added.
+   * @return true if the record was written, false otherwise.
+   */
+  public boolean appendAdd(Ingredient ingredient) {
+    return append(ingredient.toString());
+  }
+
+  /**
+   * Appends a record for units taken from the first batch of an ingredient.
+   *
+   * @param name the name of the ingredient.
+   * @param unitsToRemove the number of units that were removed.
+   * @return true if the record was written, false otherwise.
+   */
+  public boolean appendDecrement(String name, int unitsToRemove) {
+    return append("Decrement{name='" + name + "', numberOfUnits=" + unitsToRemove + "}");
+  }
+
+  /**
+   * Appends a record for the first batch of an ingredient being removed.
+   *
+   * @param name the name of the ingredient.
+   * @return true if the record was written, false otherwise.
+   */
+  public boolean appendRemove(String name) {
+    return append("Remove{name='" + name + "'}");
+  }
+
+  /**
+   * Appends a record for each of a number of added batches. The file is opened once, the
+   * records are written through a buffer, and the file is forced to disk once at the end.
+   *
+   * @param batches the batches that were added, in the order they were added.
+   * @return true if the records were written, false otherwise.
+   */
+  public boolean appendAll(Collection<Ingredient> batches) {
+    return append(batches.stream().map(Ingredient::toString).toList(), true);
+  }
+
+  private boolean append(String record) {
+    return append(List.of(record), false);
+  }
+
+  private synchronized boolean append(List<String> records, boolean force) {
+    try {
+      whileLocked(() -> {
+        // Opened after locking, so it is the file at the path and not one a compaction replaced
+        FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try (channel) {
+          boolean wasInSync = syncedStamp != null && syncedStamp.equals(FileStamp.of(filePath));
+          syncedStamp = null; // Until the records are written
+          writeRecords(channel, records, force);
+          if (wasInSync) {
+            syncedStamp = FileStamp.of(filePath);
+          }
+        }
+        return null;
+      });
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not append to ingredient log", e);
+      return false;
+    }
+    recordCount += records.size();
+    return true;
+  }
+
+  private static void writeRecords(FileChannel channel, List<String> records, boolean force)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    for (String record : records) {
+      byte[] line = (record + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+      if (line.length > buffer.remaining()) {
+        writeFully(channel, buffer.flip());
+        buffer.clear();
+      }
+      if (line.length > buffer.capacity()) {
+        writeFully(channel, ByteBuffer.wrap(line));
+      } else {
+        buffer.put(line);
+      }
+    }
+    writeFully(channel, buffer.flip());
+    if (force) {
+      channel.force(false);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Checks if the log has grown enough that it should be compacted.
+   *
+   * @param liveBatches the number of batches currently in storage.
+   * @return true if more than half of the records are no longer needed.
+   */
+  public synchronized boolean needsCompaction(int liveBatches) {
+    return recordCount >= MIN_RECORDS_BEFORE_COMPACTION && recordCount > 2 * liveBatches;
+  }
+
+  /**
+   * Rewrites the file so it only contains an add record for each of the given batches.
+   * The batches of an ingredient must be given in the order they were added.
+   *
+   * @param batches the batches currently in storage.
+   * @return true if the file was compacted, false otherwise.
+   */
+  public boolean compact(Collection<Ingredient> batches) {
+    return compact(batches, StorageFormat.TEXT);
+  }
+
+  /**
+   * Rewrites the file so it only holds the given batches, either as text records or as a
+   * binary snapshot that the log refers to. The batches of an ingredient must be given in
+   * the order they were added.
+   *
+   * @param batches the batches currently in storage.
+   * @param format the format to write the batches in.
+   * @return true if the file was compacted, false otherwise.
+   */
+  public boolean compact(Collection<Ingredient> batches, StorageFormat format) {
+    return compact(batches, format, () -> true);
+  }
+
+  /**
+   * Rewrites the file like {@link #compact(Collection, StorageFormat)}, while holding the lock
+   * that appends take, and only if the batches still match the file once it is locked. Records
+   * appended by another program after the batches were read are then never dropped by the
+   * rewrite, and appends waiting for the lock go to the new file.
+   *
+   * @param batches the batches currently in storage.
+   * @param format the format to write the batches in.
+   * @param unchanged checked while the file is locked, true if the file still holds the batches.
+   * @return true if the file was compacted, false if it had changed or could not be compacted.
+   */
+  public synchronized boolean compact(Collection<Ingredient> batches, StorageFormat format,
+      BooleanSupplier unchanged) {
+    try {
+      return whileLocked(() -> unchanged.getAsBoolean() && rewrite(batches, format));
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not lock ingredient log", e);
+      return false;
+    }
+  }
+
+  private boolean rewrite(Collection<Ingredient> batches, StorageFormat format)
+      throws IOException {
+    snapshotId = readSnapshotId(); // Another program may have compacted since this log was read
+    int newSnapshotId = 0;
+    if (format == StorageFormat.BINARY) {
+      newSnapshotId = snapshotId + 1;
+      try {
+        BinaryIngredientFormat.write(snapshotPath(newSnapshotId), batches);
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Could not write ingredient snapshot", e);
+        return false;
+      }
+    }
+
+    File tempFile = tempPath().toFile();
+    // Unlike a PrintWriter, the writer throws on a full disk, so a cut short file is never renamed
+    try (FileOutputStream file = new FileOutputStream(tempFile);
+         BufferedWriter writer = new BufferedWriter(
+             new OutputStreamWriter(file, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+      if (newSnapshotId > 0) {
+        writer.write("Snapshot{id=" + newSnapshotId + "}");
+        writer.newLine();
+      } else {
+        for (Ingredient batch : batches) {
+          writer.write(batch.toString());
+          writer.newLine();
+        }
+      }
+      writer.flush();
+      file.getFD().sync(); // The new log is on disk before it replaces the old one
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not write compacted ingredient log", e);
+      return false;
+    }
+    try {
+      FileHandler.replaceAtomically(tempFile.toPath(), Path.of(filePath));
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not replace ingredient log", e);
+      return false;
+    }
+
+    // The old snapshot is no longer referred to by the log
+    if (snapshotId > 0 && !new File(snapshotPath(snapshotId)).delete()) {
+      logger.log(Level.WARNING, "Could not delete old snapshot: {0}", snapshotPath(snapshotId));
+    }
+    snapshotId = newSnapshotId;
+    recordCount = batches.size();
+    syncedStamp = FileStamp.of(filePath);
+    return true;
+  }
+
+  /**
+   * Gets the id of the snapshot the file refers to.
+   *
+   * @return the id, or 0 if the file does not start with a snapshot record.
+   */
+  private int readSnapshotId() throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+      String line = file.readLine();
+      Matcher snapshot = line == null ? null : SNAPSHOT_PATTERN.matcher(line);
+      return snapshot != null && snapshot.matches() ? Integer.parseInt(snapshot.group(1)) : 0;
+    } catch (FileNotFoundException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Runs an action while holding the lock on the log, first within this program and then
+   * across programs. The lock file is never renamed or deleted, unlike the log itself.
+   */
+  private <T> T whileLocked(LockedAction<T> action) throws IOException {
+    synchronized (APPEND_LOCK) {
+      try (FileChannel channel = FileChannel.open(lockPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE);
+           FileLock lock = channel.lock()) {
+        return action.run();
+      }
+    }
+  }
+
+  /**
+   * An action that is run while the log is locked.
+   *
+   * @param <T> the type of the result.
+   */
+  @FunctionalInterface
+  private interface LockedAction<T> {
+    T run() throws IOException;
+  }
+
+  private Path lockPath() {
+    return Path.of(filePath + ".lock");
+  }
+
+  private Path tempPath() {
+    return Path.of(filePath + ".tmp");
+  }
+
+  private String snapshotPath(int id) {
+    return filePath + "." + id + ".bin";
+  }
+}
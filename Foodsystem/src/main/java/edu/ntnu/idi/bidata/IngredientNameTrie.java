@@ -0,0 +1,269 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Radix trie over the known ingredient names, to complete what a user has typed. Names are
+ * matched ignoring case and are returned as they were first spelled. Every edge holds all the
+ * letters up to the next branch or name, and the children of a node are kept in an array
+ * sorted by their first letter, so a long name without branches is a single node.
+ *
+ * <p>Suggestions are ranked by the number of recipes that use a name, then by name. Every node
+ * knows the most uses of any name below it, so completion visits the nodes best first and
+ * stops once it has found k names, instead of collecting every name with the prefix.
+ *
+ * <p>The trie follows the names in a {@link FoodStorage} as a {@link StorageListener}. Names
+ * are never removed, a name that is no longer in stock or in a recipe is still suggested.
+ */
+public class IngredientNameTrie implements StorageListener {
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  // Most uses first, then by name. A name comes before the node it ends in.
+  private static final Comparator<Candidate> BEST_FIRST =
+      Comparator.comparingInt(Candidate::rank).reversed()
+          .thenComparing(Candidate::path)
+          .thenComparing(candidate -> !candidate.isName());
+
+  private final Node root = new Node(new char[0]);
+  private int size;
+
+  /**
+   * A node of the trie.
+   */
+  private static final class Node {
+    private char[] label; // Letters on the edge into the node
+    private Node[] children = NO_CHILDREN; // Sorted by the first letter of their labels
+    private String name; // The name that ends here, as first spelled, or null
+    private int uses; // Number of recipes that use the name
+    private int best; // At least the uses of every name below the node
+
+    private Node(char[] label) {
+      this.label = label;
+    }
+  }
+
+  /**
+   * A node or a name waiting to be visited by a completion.
+   *
+   * @param node the node.
+   * @param path the lower-case letters from the root to the end of the node.
+   * @param rank the uses of the name, or the most uses below the node.
+   * @param isName true for the name that ends in the node, false for the node.
+   */
+  private record Candidate(Node node, String path, int rank, boolean isName) {
+  }
+
+  /**
+   * Adds a name, or changes the number of recipes that use a name that is already known.
+   *
+   * @param name the name.
+   * @param uses the number of recipes to add, or take away if negative.
+   */
+  public synchronized void add(String name, int uses) {
+    String key = key(name);
+    if (key.isEmpty()) {
+      return;
+    }
+    Node node = insert(key);
+    if (node.name == null) {
+      node.name = name.trim();
+      size++;
+    }
+    node.uses = Math.max(0, node.uses + uses);
+    if (uses > 0) {
+      raiseBest(key, node.uses);
+    }
+  }
+
+  /**
+   * Finds the node of a key, adding it and splitting edges as needed.
+   */
+  private Node insert(String key) {
+    Node node = root;
+    int i = 0;
+    while (i < key.length()) {
+      int index = childIndex(node, key.charAt(i));
+      if (index < 0) {
+        Node leaf = new Node(key.substring(i).toCharArray());
+        node.children = insertChild(node.children, -index - 1, leaf);
+        return leaf;
+      }
+      Node child = node.children[index];
+      int common = commonLength(child.label, key, i);
+      if (common < child.label.length) {
+        Node middle = new Node(Arrays.copyOf(child.label, common));
+        child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+        middle.children = new Node[] {child};
+        middle.best = child.best;
+        node.children[index] = middle;
+        child = middle;
+      }
+      node = child;
+      i += common;
+    }
+    return node;
+  }
+
+  /**
+   * Raises the best uses of the nodes on the path to a key. Taking uses away leaves the nodes
+   * as they are, their best is then more than the names below, which completion allows for.
+   */
+  private void raiseBest(String key, int uses) {
+    Node node = root;
+    node.best = Math.max(node.best, uses);
+    int i = 0;
+    while (i < key.length()) {
+      node = node.children[childIndex(node, key.charAt(i))];
+      node.best = Math.max(node.best, uses);
+      i += node.label.length;
+    }
+  }
+
+  /**
+   * Checks if a name is known.
+   *
+   * @param name the name, in any case.
+   * @return true if the name is known, false otherwise.
+   */
+  public synchronized boolean contains(String name) {
+    String key = key(name);
+    Node node = root;
+    int i = 0;
+    while (i < key.length()) {
+      int index = childIndex(node, key.charAt(i));
+      if (index < 0) {
+        return false;
+      }
+      node = node.children[index];
+      if (commonLength(node.label, key, i) < node.label.length) {
+        return false;
+      }
+      i += node.label.length;
+    }
+    return node.name != null;
+  }
+
+  /**
+   * Gets the number of known names.
+   *
+   * @return the number of names.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Completes a prefix to the known names that start with it.
+   *
+   * @param prefix the start of a name, in any case.
+   * @param k the largest number of names to return.
+   * @return the names, the ones used by most recipes first.
+   */
+  public synchronized List<String> complete(String prefix, int k) {
+    String key = prefix.stripLeading().toLowerCase(Locale.ROOT); // A space may end a word
+    if (k <= 0) {
+      return List.of();
+    }
+    Node node = root;
+    StringBuilder path = new StringBuilder();
+    int i = 0;
+    while (i < key.length()) {
+      int index = childIndex(node, key.charAt(i));
+      if (index < 0) {
+        return List.of();
+      }
+      node = node.children[index];
+      int common = commonLength(node.label, key, i);
+      if (common < node.label.length && i + common < key.length()) {
+        return List.of(); // The prefix leaves the edge before it ends
+      }
+      path.append(node.label);
+      i += common;
+    }
+
+    List<String> names = new ArrayList<>(k);
+    PriorityQueue<Candidate> queue = new PriorityQueue<>(BEST_FIRST);
+    queue.add(new Candidate(node, path.toString(), node.best, false));
+    while (!queue.isEmpty() && names.size() < k) {
+      Candidate candidate = queue.poll();
+      Node current = candidate.node();
+      if (candidate.isName()) {
+        names.add(current.name);
+        continue;
+      }
+      if (current.name != null) {
+        queue.add(new Candidate(current, candidate.path(), current.uses, true));
+      }
+      for (Node child : current.children) {
+        queue.add(new Candidate(child, candidate.path() + new String(child.label), child.best,
+            false));
+      }
+    }
+    return names;
+  }
+
+  @Override
+  public synchronized void ingredientChanged(FoodStorage foodStorage, String name) {
+    add(name, 0);
+  }
+
+  @Override
+  public synchronized void ingredientsReloaded(FoodStorage foodStorage) {
+    for (String name : foodStorage.getIngredientNames()) {
+      IngredientInfo available = foodStorage.getAvailable(name);
+      add(available == null ? name : available.name(), 0);
+    }
+  }
+
+  private static String key(String name) {
+    return name.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Finds the child whose label starts with a letter.
+   *
+   * @return the index of the child, or -(insertion point) - 1 if there is none.
+   */
+  private static int childIndex(Node node, char letter) {
+    Node[] children = node.children;
+    int low = 0;
+    int high = children.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      char first = children[middle].label[0];
+      if (first < letter) {
+        low = middle + 1;
+      } else if (first > letter) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -low - 1;
+  }
+
+  private static Node[] insertChild(Node[] children, int index, Node child) {
+    Node[] grown = new Node[children.length + 1];
+    System.arraycopy(children, 0, grown, 0, index);
+    grown[index] = child;
+    System.arraycopy(children, index, grown, index + 1, children.length - index);
+    return grown;
+  }
+
+  /**
+   * Counts the letters a label has in common with a key from a position on.
+   */
+  private static int commonLength(char[] label, String key, int from) {
+    int length = Math.min(label.length, key.length() - from);
+    int i = 0;
+    while (i < length && label[i] == key.charAt(from + i)) {
+      i++;
+    }
+    return i;
+  }
+}
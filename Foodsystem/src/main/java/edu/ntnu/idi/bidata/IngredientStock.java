@@ -0,0 +1,201 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * The batches of one ingredient, used first expired, first out: the batch that expires first
+ * is used first, and batches that expire on the same day are used in the order they were
+ * added. The batches are kept in a priority queue, so adding a batch and using one up cost
+ * O(log n).
+ *
+ * <p>Amounts are summed and used as {@link MeasurementUnit} base quantities per dimension, so
+ * a batch of 1 Liter and one of 500 Milliliter are 1500 millilitres of the same stock. Batches
+ * in a unit that is not known are only summed with batches in the same unit. The total of each
+ * dimension is kept as batches come and go, so it is read without looking at the batches.
+ *
+ * <p>Not thread-safe, {@link FoodStorage} guards every stock with the lock of its name.
+ */
+final class IngredientStock {
+  private static final Comparator<Entry> FIRST_EXPIRED_FIRST =
+      Comparator.comparing((Entry entry) -> entry.batch().getExpirationDate())
+          .thenComparingLong(Entry::sequence);
+
+  private final PriorityQueue<Entry> batches = new PriorityQueue<>(FIRST_EXPIRED_FIRST);
+  // Base quantity in stock by the dimension of a known unit, or by the unit if it is not known
+  private final Map<Object, Long> baseByMeasure = new HashMap<>(4);
+  private long nextSequence; // Order the batches were added in, for batches expiring together
+
+  /**
+   * A batch and when it was added.
+   */
+  private record Entry(Ingredient batch, long sequence) {
+  }
+
+  /**
+   * Adds a batch.
+   *
+   * @param batch the batch.
+   */
+  void add(Ingredient batch) {
+    batches.add(new Entry(batch, nextSequence++));
+    baseByMeasure.merge(measureOf(batch.getUnit()), baseQuantity(batch), Long::sum);
+  }
+
+  /**
+   * Gets the batch that is used first.
+   *
+   * @return the batch, or null if there are no batches.
+   */
+  Ingredient first() {
+    Entry first = batches.peek();
+    return first == null ? null : first.batch();
+  }
+
+  boolean isEmpty() {
+    return batches.isEmpty();
+  }
+
+  /**
+   * Gets what is in stock of the dimension of the batch that is used first, over all batches
+   * of that dimension. The total is given in the unit of that batch if it is a whole number of
+   * it, and in the base unit otherwise. The price is the price of that batch.
+   *
+   * @return the total, or null if there are no batches.
+   */
+  IngredientInfo total() {
+    Ingredient first = first();
+    if (first == null) {
+      return null;
+    }
+    long base = baseByMeasure.getOrDefault(measureOf(first.getUnit()), 0L);
+    String unit = unitFor(first.getUnit(), base);
+    int units = (int) Math.min(amountIn(unit, base), Integer.MAX_VALUE);
+    return new IngredientInfo(first.getName(), units, unit, first.getPrice());
+  }
+
+  /**
+   * Removes the batch that is used first, whatever its number of units.
+   *
+   * @return the batch, or null if there are no batches.
+   */
+  Ingredient removeFirst() {
+    Entry first = batches.poll();
+    if (first == null) {
+      return null;
+    }
+    subtract(measureOf(first.batch().getUnit()), baseQuantity(first.batch()));
+    return first.batch();
+  }
+
+  /**
+   * Uses units of the unit of the batch that is used first, taking them from the batches of the
+   * same dimension in the order they are used. Batches that are used up are removed, and a
+   * batch that is only partly used is replaced by one with what is left, in the base unit if
+   * that is not a whole number of its own unit. Nothing changes if there is less in stock.
+   *
+   * @param units the number of units to use, at least 1.
+   * @param changed told about every batch that is removed or replaced, with the batch that
+   *     replaces it or null.
+   * @return true if the units were used, false otherwise.
+   */
+  boolean consume(int units, BiConsumer<Ingredient, Ingredient> changed) {
+    Ingredient first = first();
+    if (first == null) {
+      return false;
+    }
+    Object measure = measureOf(first.getUnit());
+    long needed = baseQuantity(first.getUnit(), units);
+    if (baseByMeasure.getOrDefault(measure, 0L) < needed) {
+      return false;
+    }
+    List<Entry> otherMeasures = null; // Batches of the ingredient that can not be summed with it
+    long left = needed;
+    while (left > 0) {
+      Entry entry = batches.poll();
+      Ingredient batch = entry.batch();
+      if (!measureOf(batch.getUnit()).equals(measure)) {
+        if (otherMeasures == null) {
+          otherMeasures = new ArrayList<>();
+        }
+        otherMeasures.add(entry);
+        continue;
+      }
+      long base = baseQuantity(batch);
+      if (base <= left) {
+        left -= base;
+        changed.accept(batch, null);
+      } else {
+        String unit = unitFor(batch.getUnit(), base - left);
+        Ingredient rest = new Ingredient(batch.getName(), unit,
+            (int) amountIn(unit, base - left), batch.getPrice(), batch.getExpirationDate());
+        batches.add(new Entry(rest, entry.sequence())); // Still the first to be used
+        changed.accept(batch, rest);
+        left = 0;
+      }
+    }
+    if (otherMeasures != null) {
+      batches.addAll(otherMeasures);
+    }
+    subtract(measure, needed);
+    return true;
+  }
+
+  /**
+   * Gets the batches in the order they are used.
+   *
+   * @return the batches.
+   */
+  List<Ingredient> inOrder() {
+    return batches.stream().sorted(FIRST_EXPIRED_FIRST).map(Entry::batch).toList();
+  }
+
+  private void subtract(Object measure, long base) {
+    long left = baseByMeasure.get(measure) - base;
+    if (left == 0) {
+      baseByMeasure.remove(measure);
+    } else {
+      baseByMeasure.put(measure, left);
+    }
+  }
+
+  /**
+   * Gets what the amounts of a unit are summed with: the dimension of a known unit, or the
+   * unit itself.
+   */
+  private static Object measureOf(String unit) {
+    MeasurementUnit known = MeasurementUnit.parse(unit);
+    return known == null ? String.valueOf(unit) : known.getDimension();
+  }
+
+  private static long baseQuantity(Ingredient batch) {
+    return baseQuantity(batch.getUnit(), batch.getNumberOfItems());
+  }
+
+  private static long baseQuantity(String unit, long amount) {
+    MeasurementUnit known = MeasurementUnit.parse(unit);
+    return known == null ? amount : known.toBase(amount);
+  }
+
+  /**
+   * Gets the unit to write a base quantity in: the unit itself if the quantity is a whole
+   * number of it, and the base unit of its dimension otherwise.
+   */
+  private static String unitFor(String unit, long base) {
+    MeasurementUnit known = MeasurementUnit.parse(unit);
+    if (known == null || base % known.toBase(1) == 0) {
+      return unit;
+    }
+    return known.getBaseUnit().getDisplayName();
+  }
+
+  private static long amountIn(String unit, long base) {
+    MeasurementUnit known = MeasurementUnit.parse(unit);
+    return known == null ? base : base / known.toBase(1);
+  }
+}
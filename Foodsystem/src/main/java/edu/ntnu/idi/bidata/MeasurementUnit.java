@@ -0,0 +1,105 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The units ingredients are measured in. Every unit is a whole number of a base unit of its
+ * dimension: grams for mass, millilitres for volume and pieces for counts. Amounts are turned
+ * into base quantities once, so amounts in different units of the same dimension are compared
+ * as plain longs, and 1 Liter of milk is enough for a recipe that needs 500 Milliliter.
+ */
+public enum MeasurementUnit {
+  GRAM("Gram", Dimension.MASS, 1, "g", "gram", "grams"),
+  KILOGRAM("Kilogram", Dimension.MASS, 1000, "kg", "kilogram", "kilograms"),
+  MILLILITER("Milliliter", Dimension.VOLUME, 1, "ml", "milliliter", "millilitre", "milliliters"),
+  DECILITER("Deciliter", Dimension.VOLUME, 100, "dl", "deciliter", "decilitre", "deciliters"),
+  LITER("Liter", Dimension.VOLUME, 1000, "l", "liter", "litre", "liters"),
+  TEASPOON("Teaspoon", Dimension.VOLUME, 5, "tsp", "teaspoon", "teaspoons"),
+  TABLESPOON("Tablespoon", Dimension.VOLUME, 15, "tbsp", "tablespoon", "tablespoons"),
+  PIECES("Pieces", Dimension.COUNT, 1, "pcs", "piece", "pieces");
+
+  /**
+   * What a unit measures. Only amounts of the same dimension can be compared.
+   */
+  public enum Dimension {
+    MASS,
+    VOLUME,
+    COUNT
+  }
+
+  private static final Map<String, MeasurementUnit> BY_SPELLING = new HashMap<>();
+
+  static {
+    for (MeasurementUnit unit : values()) {
+      for (String spelling : unit.spellings) {
+        BY_SPELLING.put(spelling, unit);
+      }
+    }
+  }
+
+  private final String displayName;
+  private final Dimension dimension;
+  private final long baseUnits; // Number of base units in one of this unit
+  private final String[] spellings;
+
+  MeasurementUnit(String displayName, Dimension dimension, long baseUnits, String... spellings) {
+    this.displayName = displayName;
+    this.dimension = dimension;
+    this.baseUnits = baseUnits;
+    this.spellings = spellings;
+  }
+
+  /**
+   * Finds the unit with a name or abbreviation, ignoring case and surrounding whitespace.
+   *
+   * @param unit the name of the unit, like "Gram", "kg" or "litre".
+   * @return the unit, or null if the name is not a known unit.
+   */
+  public static MeasurementUnit parse(String unit) {
+    return unit == null ? null : BY_SPELLING.get(unit.trim().toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Gets the name of the unit as it is shown to the user and written to the files.
+   *
+   * @return the name.
+   */
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  public Dimension getDimension() {
+    return dimension;
+  }
+
+  /**
+   * Turns an amount of this unit into the base unit of its dimension.
+   *
+   * @param amount the amount.
+   * @return the amount in grams, millilitres or pieces.
+   */
+  public long toBase(long amount) {
+    return amount * baseUnits;
+  }
+
+  /**
+   * Gets the base unit of the dimension of this unit, the unit every amount of the dimension
+   * can be written in as a whole number.
+   *
+   * @return {@link #GRAM}, {@link #MILLILITER} or {@link #PIECES}.
+   */
+  public MeasurementUnit getBaseUnit() {
+    return switch (dimension) {
+      case MASS -> GRAM;
+      case VOLUME -> MILLILITER;
+      case COUNT -> PIECES;
+    };
+  }
+
+  @Override
+  public String toString() {
+    return displayName;
+  }
+}
@@ -0,0 +1,446 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ingredient store that keeps its batches outside the Java heap, in a file that is mapped into
+ * memory. Every batch is a fixed-width record, so a batch is found by its row number alone,
+ * and opening an existing store maps the file instead of parsing it. The heap only holds the
+ * dictionary of names and units and the first and last row of every name.
+ *
+ * <p>The file starts with a header holding the number of rows, followed by the records in
+ * chunks that are mapped one by one, so the file can grow past the 2 GB a single mapping can
+ * hold. The dictionary is kept in a text file next to it, one word per line. The batches of a
+ * name are linked in the order they are used, and removals take units from them first
+ * expired, first out like in {@link FoodStorage}. The store is not thread-safe.
+ */
+public class OffHeapInventory implements Closeable {
+  private static final int MAGIC = 0x46534F48; // "FSOH"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 64;
+  private static final int RECORD_SIZE = 32;
+  private static final int CHUNK_SHIFT = 20; // 2^20 records per chunk, 32 MB
+  private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+  private static final int NONE = -1;
+
+  // Offsets of the fields in a record
+  private static final int NAME = 0;
+  private static final int UNIT = 4;
+  private static final int UNITS = 8;
+  private static final int EXPIRY = 12;
+  private static final int PRICE = 16;
+  private static final int NEXT_OF_NAME = 24;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final List<MappedByteBuffer> chunks = new ArrayList<>();
+  private final BufferedWriter dictionaryWriter;
+  private final StringDictionary words = new StringDictionary(false); // Names and units
+  private final StringDictionary keys = new StringDictionary(true); // Names ignoring case
+  private int[] keyOfWord = new int[16];
+  private int[] firstOfName = new int[16];
+  private int[] lastOfName = new int[16];
+  private int rows;
+  private int liveRows;
+
+  private OffHeapInventory(Path dataFile) throws IOException {
+    Path dictionaryFile = dictionaryPath(dataFile);
+    if (Files.exists(dictionaryFile)) {
+      try (BufferedReader reader = Files.newBufferedReader(dictionaryFile)) {
+        String word;
+        while ((word = reader.readLine()) != null) {
+          addWord(word);
+        }
+      }
+    }
+    channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    boolean created = channel.size() == 0;
+    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    if (created) {
+      header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, 0);
+    } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+      channel.close();
+      throw new IOException("Not an off-heap inventory file: " + dataFile);
+    }
+    rows = header.getInt(8);
+    for (int chunk = 0; chunk << CHUNK_SHIFT < rows; chunk++) {
+      mapChunk(chunk);
+    }
+    dictionaryWriter = Files.newBufferedWriter(dictionaryFile, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    rebuildNameLinks();
+  }
+
+  /**
+   * Opens a store, creating it if the file does not exist.
+   *
+   * @param dataFile the file of the records, the dictionary is written next to it.
+   * @return the store.
+   * @throws IOException if the file could not be opened or is not a store.
+   */
+  public static OffHeapInventory open(Path dataFile) throws IOException {
+    return new OffHeapInventory(dataFile);
+  }
+
+  private static Path dictionaryPath(Path dataFile) {
+    return dataFile.resolveSibling(dataFile.getFileName() + ".words");
+  }
+
+  /**
+   * Links the batches of every name in the order they are used. The records are read in the
+   * order they were added, so batches that expire on the same day are linked in that order
+   * again.
+   */
+  private void rebuildNameLinks() {
+    Arrays.fill(firstOfName, NONE);
+    Arrays.fill(lastOfName, NONE);
+    liveRows = 0;
+    for (int row = 0; row < rows; row++) {
+      if (getInt(row, UNITS) == 0) {
+        continue;
+      }
+      link(row, keyOfWord[getInt(row, NAME)]);
+      liveRows++;
+    }
+  }
+
+  /**
+   * Links a batch into the batches of its name, in the order they are used: by expiry day, and
+   * in the order they were added for batches that expire on the same day.
+   */
+  private void link(int row, int key) {
+    int expiry = getInt(row, EXPIRY);
+    int previous = lastOfName[key];
+    int next = NONE;
+    if (previous != NONE && getInt(previous, EXPIRY) > expiry) {
+      previous = NONE;
+      next = firstOfName[key];
+      while (getInt(next, EXPIRY) <= expiry) {
+        previous = next;
+        next = getInt(next, NEXT_OF_NAME);
+      }
+    }
+    putInt(row, NEXT_OF_NAME, next);
+    if (previous == NONE) {
+      firstOfName[key] = row;
+    } else {
+      putInt(previous, NEXT_OF_NAME, row);
+    }
+    if (next == NONE) {
+      lastOfName[key] = row;
+    }
+  }
+
+  /**
+   * Adds a batch.
+   *
+   * @param name the name of the ingredient.
+   * @param unit the unit of the ingredient.
+   * @param numberOfUnits the number of units, at least 1.
+   * @param price the price of the batch.
+   * @param expirationDate the expiration date.
+   * @throws IOException if the file could not grow or a new word could not be written.
+   */
+  public void add(String name, String unit, int numberOfUnits, double price,
+                  LocalDate expirationDate) throws IOException {
+    if (numberOfUnits <= 0) {
+      throw new IllegalArgumentException("Number of units must be positive");
+    }
+    int nameId = wordId(name);
+    int unitId = wordId(unit);
+    MeasurementUnit measurementUnit = MeasurementUnit.parse(unit);
+    if (measurementUnit != null) {
+      // What is left of a batch used in part may be written in the base unit
+      wordId(measurementUnit.getBaseUnit().getDisplayName());
+    }
+    int row = rows;
+    if (row >> CHUNK_SHIFT == chunks.size()) {
+      mapChunk(chunks.size());
+    }
+    MappedByteBuffer chunk = chunkOf(row);
+    int offset = offsetOf(row);
+    chunk.putInt(offset + NAME, nameId)
+        .putInt(offset + UNIT, unitId)
+        .putInt(offset + UNITS, numberOfUnits)
+        .putInt(offset + EXPIRY, (int) expirationDate.toEpochDay())
+        .putDouble(offset + PRICE, price)
+        .putInt(offset + NEXT_OF_NAME, NONE);
+    link(row, keyOfWord[nameId]);
+    rows++;
+    liveRows++;
+    header.putInt(8, rows); // Only counted once the record is complete
+  }
+
+  /**
+   * Removes units of an ingredient, first expired, first out, like
+   * {@link FoodStorage#takeIngredient(String, int)}. The units are in the unit of the batch that
+   * is used first, and are taken from the batches in a unit of the same dimension. A batch that
+   * is used up keeps its record with 0 units, and what is left of a batch that is used in part
+   * is kept in its unit, or in the base unit if it is not a whole number of it. Nothing
+   * changes if there is less in stock.
+   *
+   * @param name the name of the ingredient.
+   * @param unitsToRemove the number of units to remove, 0 removes the batch that is used first.
+   * @return true if the stock was changed, false otherwise.
+   */
+  public boolean removeUnits(String name, int unitsToRemove) {
+    int key = keys.idOf(name);
+    int first = key < 0 ? NONE : firstOfName[key];
+    if (first == NONE) {
+      return false;
+    }
+    if (unitsToRemove == 0) {
+      removeRow(key, NONE, first);
+      return true;
+    }
+    int dimension = dimensionOf(getInt(first, UNIT));
+    long left = toBase(getInt(first, UNIT), unitsToRemove);
+    long available = 0;
+    for (int row = first; row != NONE && available < left; row = getInt(row, NEXT_OF_NAME)) {
+      if (dimensionOf(getInt(row, UNIT)) == dimension) {
+        available += baseQuantityOf(row);
+      }
+    }
+    if (available < left) {
+      return false;
+    }
+    int previous = NONE;
+    int row = first;
+    while (left > 0) {
+      int next = getInt(row, NEXT_OF_NAME);
+      if (dimensionOf(getInt(row, UNIT)) != dimension) {
+        previous = row;
+      } else if (baseQuantityOf(row) <= left) {
+        left -= baseQuantityOf(row);
+        removeRow(key, previous, row);
+      } else {
+        setBaseQuantity(row, baseQuantityOf(row) - left);
+        left = 0;
+      }
+      row = next;
+    }
+    return true;
+  }
+
+  /**
+   * Unlinks a used up batch from the batches of its name and sets its units to 0.
+   */
+  private void removeRow(int key, int previous, int row) {
+    int next = getInt(row, NEXT_OF_NAME);
+    if (previous == NONE) {
+      firstOfName[key] = next;
+    } else {
+      putInt(previous, NEXT_OF_NAME, next);
+    }
+    if (next == NONE) {
+      lastOfName[key] = previous;
+    }
+    putInt(row, UNITS, 0);
+    liveRows--;
+  }
+
+  /**
+   * Sets the amount of a batch to a base quantity, in its unit if the quantity is a whole
+   * number of it and in the base unit of its dimension otherwise.
+   */
+  private void setBaseQuantity(int row, long base) {
+    MeasurementUnit unit = MeasurementUnit.parse(words.word(getInt(row, UNIT)));
+    if (unit != null && base % unit.toBase(1) != 0) {
+      unit = unit.getBaseUnit();
+      putInt(row, UNIT, words.idOf(unit.getDisplayName())); // Added with the batch
+    }
+    putInt(row, UNITS, (int) (unit == null ? base : base / unit.toBase(1)));
+  }
+
+  /**
+   * Gets the dimension code of a unit. Amounts of units with the same code are summed, and a
+   * unit that is not known only matches itself.
+   */
+  private int dimensionOf(int unitId) {
+    MeasurementUnit unit = MeasurementUnit.parse(words.word(unitId));
+    return unit == null
+        ? MeasurementUnit.Dimension.values().length + unitId
+        : unit.getDimension().ordinal();
+  }
+
+  private long toBase(int unitId, int amount) {
+    MeasurementUnit unit = MeasurementUnit.parse(words.word(unitId));
+    return unit == null ? amount : unit.toBase(amount);
+  }
+
+  private long baseQuantityOf(int row) {
+    return toBase(getInt(row, UNIT), getInt(row, UNITS));
+  }
+
+  /**
+   * Checks if an ingredient is in the store.
+   *
+   * @param name the name of the ingredient.
+   * @return true if it has at least one batch.
+   */
+  public boolean contains(String name) {
+    int key = keys.idOf(name);
+    return key >= 0 && firstOfName[key] != NONE;
+  }
+
+  /**
+   * Gets the batch of an ingredient that is used first, like
+   * {@link FoodStorage#getIngredients(String)}.
+   *
+   * @param name the name of the ingredient.
+   * @return the ingredient info, or null if the ingredient is not in the store.
+   */
+  public IngredientInfo getIngredients(String name) {
+    int key = keys.idOf(name);
+    int row = key < 0 ? NONE : firstOfName[key];
+    if (row == NONE) {
+      return null;
+    }
+    return new IngredientInfo(words.word(getInt(row, NAME)), getInt(row, UNITS),
+        words.word(getInt(row, UNIT)), getDouble(row, PRICE));
+  }
+
+  /**
+   * Gets the number of batches in the store.
+   *
+   * @return the number of batches.
+   */
+  public int size() {
+    return liveRows;
+  }
+
+  /**
+   * Counts the batches that expire before a day, reading the records without allocating.
+   *
+   * @param epochDay the day, counted from 1970-01-01.
+   * @return the number of batches.
+   */
+  public int countExpiringBefore(long epochDay) {
+    int count = 0;
+    for (int row = 0; row < rows; row++) {
+      if (getInt(row, UNITS) > 0 && getInt(row, EXPIRY) < epochDay) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Creates an ingredient object for every batch, in the order of the records.
+   *
+   * @return the batches.
+   */
+  public List<Ingredient> toIngredients() {
+    List<Ingredient> ingredients = new ArrayList<>(liveRows);
+    for (int row = 0; row < rows; row++) {
+      int units = getInt(row, UNITS);
+      if (units > 0) {
+        ingredients.add(new Ingredient(words.word(getInt(row, NAME)),
+            words.word(getInt(row, UNIT)), units, getDouble(row, PRICE),
+            LocalDate.ofEpochDay(getInt(row, EXPIRY))));
+      }
+    }
+    return ingredients;
+  }
+
+  /**
+   * Forces the records and the dictionary to disk.
+   *
+   * @throws IOException if the dictionary could not be written.
+   */
+  public void force() throws IOException {
+    dictionaryWriter.flush();
+    chunks.forEach(MappedByteBuffer::force);
+    header.force();
+  }
+
+  /**
+   * Forces the store to disk and closes its files. The mappings are released by the garbage
+   * collector once the store is no longer referenced.
+   *
+   * @throws IOException if the store could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      force();
+    } finally {
+      dictionaryWriter.close();
+      channel.close();
+    }
+  }
+
+  private int wordId(String word) throws IOException {
+    int known = words.size();
+    int id = addWord(word);
+    if (id == known) {
+      // Written before any record refers to it, so the dictionary is never behind the records
+      dictionaryWriter.write(word);
+      dictionaryWriter.newLine();
+      dictionaryWriter.flush();
+    }
+    return id;
+  }
+
+  private int addWord(String word) {
+    int known = words.size();
+    int id = words.add(word);
+    if (id == known) {
+      if (id == keyOfWord.length) {
+        keyOfWord = Arrays.copyOf(keyOfWord, id * 2);
+      }
+      int knownKeys = keys.size();
+      int key = keys.add(word);
+      keyOfWord[id] = key;
+      if (key == knownKeys) {
+        if (key == firstOfName.length) {
+          firstOfName = Arrays.copyOf(firstOfName, key * 2);
+          lastOfName = Arrays.copyOf(lastOfName, key * 2);
+        }
+        firstOfName[key] = NONE;
+        lastOfName[key] = NONE;
+      }
+    }
+    return id;
+  }
+
+  private void mapChunk(int chunk) throws IOException {
+    long position = HEADER_SIZE + (long) chunk * CHUNK_RECORDS * RECORD_SIZE;
+    chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, position,
+        (long) CHUNK_RECORDS * RECORD_SIZE));
+  }
+
+  private MappedByteBuffer chunkOf(int row) {
+    return chunks.get(row >> CHUNK_SHIFT);
+  }
+
+  private static int offsetOf(int row) {
+    return (row & (CHUNK_RECORDS - 1)) * RECORD_SIZE;
+  }
+
+  private int getInt(int row, int field) {
+    return chunkOf(row).getInt(offsetOf(row) + field);
+  }
+
+  private void putInt(int row, int field, int value) {
+    chunkOf(row).putInt(offsetOf(row) + field, value);
+  }
+
+  private double getDouble(int row, int field) {
+    return chunkOf(row).getDouble(offsetOf(row) + field);
+  }
+}
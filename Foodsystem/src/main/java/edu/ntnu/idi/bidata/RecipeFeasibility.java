@@ -0,0 +1,132 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks which recipes can be made with the stock of a {@link ColumnarInventory}. Every recipe
+ * is compiled once into the ids of its ingredients and the base quantities it needs, kept in
+ * flat arrays, so checking a recipe only compares numbers and allocates nothing. A recipe can
+ * be made when each of its ingredients is in stock in a unit of the same dimension, with at
+ * least the amount it needs summed over the batches, like in {@link RecipeIndex}.
+ *
+ * <p>The ids of the inventory never change, so the compiled recipes stay valid as the stock
+ * changes. The class is not thread-safe.
+ */
+public class RecipeFeasibility {
+  private final ColumnarInventory inventory;
+  private final List<Recipe> recipes = new ArrayList<>();
+
+  // The ingredients of recipe i are at positions start[i] to start[i + 1] - 1
+  private int[] start = new int[17];
+  private int[] keyIds = new int[64];
+  private int[] dimensions = new int[64];
+  private long[] needed = new long[64];
+
+  /**
+   * Create a new feasibility check.
+   *
+   * @param inventory the inventory holding the stock.
+   */
+  public RecipeFeasibility(ColumnarInventory inventory) {
+    this.inventory = inventory;
+  }
+
+  /**
+   * Compiles a recipe.
+   *
+   * @param recipe the recipe.
+   * @return the id of the recipe, counting from 0 in the order the recipes were added.
+   */
+  public int add(Recipe recipe) {
+    int id = recipes.size();
+    if (id + 1 == start.length) {
+      start = Arrays.copyOf(start, start.length * 2);
+    }
+    int position = start[id];
+    int end = position + recipe.ingredients().size();
+    if (end > keyIds.length) {
+      int capacity = Math.max(end, keyIds.length * 2);
+      keyIds = Arrays.copyOf(keyIds, capacity);
+      dimensions = Arrays.copyOf(dimensions, capacity);
+      needed = Arrays.copyOf(needed, capacity);
+    }
+    for (IngredientInfo ingredient : recipe.ingredients()) {
+      keyIds[position] = inventory.keyId(ingredient.name());
+      int unitId = inventory.unitId(ingredient.unit());
+      dimensions[position] = inventory.dimensionOf(unitId);
+      needed[position] = inventory.toBase(unitId, ingredient.amount());
+      position++;
+    }
+    start[id + 1] = end;
+    recipes.add(recipe);
+    return id;
+  }
+
+  /**
+   * Checks if a recipe can be made with the stock, without allocating.
+   *
+   * @param recipeId the id of the recipe.
+   * @return true if every ingredient is in stock.
+   */
+  public boolean canMake(int recipeId) {
+    for (int i = start[recipeId]; i < start[recipeId + 1]; i++) {
+      int key = keyIds[i];
+      if (inventory.availableBaseQuantity(key) < needed[i]
+          || inventory.firstDimension(key) != dimensions[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the total price of the batches a recipe would use first, without allocating.
+   *
+   * @param recipeId the id of the recipe.
+   * @return the total price, counting only the ingredients that are in stock.
+   */
+  public double totalPrice(int recipeId) {
+    double total = 0.0;
+    for (int i = start[recipeId]; i < start[recipeId + 1]; i++) {
+      total += inventory.firstPrice(keyIds[i]);
+    }
+    return total;
+  }
+
+  /**
+   * Finds the recipes that can be made, without allocating.
+   *
+   * @param out the array the ids are written to, at least {@link #size()} long.
+   * @return the number of ids written.
+   */
+  public int findCookable(int[] out) {
+    int count = 0;
+    for (int id = 0; id < recipes.size(); id++) {
+      if (canMake(id)) {
+        out[count++] = id;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets a recipe by its id.
+   *
+   * @param recipeId the id of the recipe.
+   * @return the recipe.
+   */
+  public Recipe getRecipe(int recipeId) {
+    return recipes.get(recipeId);
+  }
+
+  /**
+   * Gets the number of recipes.
+   *
+   * @return the number of recipes.
+   */
+  public int size() {
+    return recipes.size();
+  }
+}
@@ -0,0 +1,304 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index from recipe names to where the recipes are in a recipe file, so one recipe can be read
+ * without reading the whole file. The index is kept in a file next to the recipe file, with one
+ * line {@code <offset> <length> <name>} per recipe, in the order of the recipe file. When a name
+ * is in the file more than once, the last recipe with that name is used, as when the file is
+ * loaded.
+ *
+ * <p>Recipes written by this program are added as they are written. Recipes that were added to
+ * the recipe file some other way are found when the index is opened, by reading the part of
+ * the recipe file after the last recipe in the index. If the recipe file is shorter than the
+ * index says, or a recipe is not where the index says it is, the index is built again.
+ */
+public class RecipeFileIndex implements Closeable {
+  private static final Logger logger = Logger.getLogger(RecipeFileIndex.class.getName());
+  private static final byte[] RECIPE_NAME = "Recipe Name: ".getBytes(StandardCharsets.US_ASCII);
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Path recipeFile;
+  private final Path indexFile;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private BufferedWriter writer;
+  private long indexedEnd; // Position in the recipe file after the last recipe in the index
+
+  /**
+   * Where a recipe is in the recipe file.
+   *
+   * @param offset the position of the "Recipe Name:" line.
+   * @param length the number of bytes up to the next recipe.
+   */
+  public record Entry(long offset, int length) {
+  }
+
+  private RecipeFileIndex(Path recipeFile) {
+    this.recipeFile = recipeFile.toAbsolutePath();
+    this.indexFile = indexPathOf(this.recipeFile);
+  }
+
+  /**
+   * Opens the index of a recipe file, adding the recipes the index is missing.
+   *
+   * @param recipeFile the path of the recipe file.
+   * @return the index.
+   * @throws IOException if the index or the recipe file could not be read or written.
+   */
+  public static RecipeFileIndex open(Path recipeFile) throws IOException {
+    RecipeFileIndex index = new RecipeFileIndex(recipeFile);
+    index.load();
+    return index;
+  }
+
+  /**
+   * Gets the path of the index of a recipe file.
+   *
+   * @param recipeFile the path of the recipe file.
+   * @return the path of the index.
+   */
+  public static Path indexPathOf(Path recipeFile) {
+    return recipeFile.resolveSibling(recipeFile.getFileName() + ".idx");
+  }
+
+  public Path getRecipeFile() {
+    return recipeFile;
+  }
+
+  private void load() throws IOException {
+    long recipeFileSize = Files.exists(recipeFile) ? Files.size(recipeFile) : 0;
+    boolean valid = readIndexFile();
+    if (!valid || indexedEnd > recipeFileSize) {
+      rebuild();
+      return;
+    }
+    writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    if (indexedEnd < recipeFileSize) {
+      scanFrom(indexedEnd);
+      writer.flush();
+    }
+  }
+
+  /**
+   * Reads the lines of the index file.
+   *
+   * @return false if the index file has a line that is not an entry, true otherwise.
+   */
+  private boolean readIndexFile() throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(" ", 3);
+        if (fields.length != 3) {
+          return false;
+        }
+        try {
+          put(fields[2], new Entry(Long.parseLong(fields[0]), Integer.parseInt(fields[1])));
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+      return true;
+    } catch (NoSuchFileException e) {
+      return true; // Nothing indexed yet
+    }
+  }
+
+  /**
+   * Builds the index again from the whole recipe file, replacing the index file.
+   */
+  private void rebuild() throws IOException {
+    if (writer != null) {
+      writer.close();
+    }
+    entries.clear();
+    indexedEnd = 0;
+    Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+    scanFrom(0);
+    writer.close();
+    FileHandler.replaceAtomically(temp, indexFile);
+    writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Adds the recipes in the recipe file from a position on. A recipe starts at a
+   * "Recipe Name:" line and ends where the next recipe starts.
+   */
+  private void scanFrom(long position) throws IOException {
+    if (!Files.exists(recipeFile)) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(recipeFile, StandardOpenOption.READ)) {
+      long end = channel.size();
+      ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+      byte[] line = new byte[256];
+      int lineLength = 0;
+      long lineStart = position;
+      long recipeStart = position;
+      String name = null;
+      long chunkStart = position;
+      while (chunkStart < end) {
+        chunk.clear();
+        int read = channel.read(chunk, chunkStart);
+        if (read < 0) {
+          break;
+        }
+        for (int i = 0; i < read; i++) {
+          byte b = chunk.get(i);
+          if (b != '\n') {
+            if (lineLength < RECIPE_NAME.length || isNameLine(line)) { // Only names are kept
+              if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+              }
+              line[lineLength] = b;
+            }
+            lineLength++;
+            continue;
+          }
+          String recipeName = recipeName(line, lineLength);
+          if (recipeName != null) {
+            if (name != null) {
+              add(name, recipeStart, lineStart);
+            }
+            name = recipeName;
+            recipeStart = lineStart;
+          }
+          lineLength = 0;
+          lineStart = chunkStart + i + 1;
+        }
+        chunkStart += read;
+      }
+      if (name != null) {
+        add(name, recipeStart, end);
+      }
+    }
+  }
+
+  private static boolean isNameLine(byte[] line) {
+    return Arrays.equals(line, 0, RECIPE_NAME.length, RECIPE_NAME, 0, RECIPE_NAME.length);
+  }
+
+  /**
+   * Gets the recipe name of a line.
+   *
+   * @return the name, or null if the line is not a "Recipe Name:" line.
+   */
+  private static String recipeName(byte[] line, int length) {
+    if (length <= RECIPE_NAME.length || !isNameLine(line)) {
+      return null; // Only the start of other lines is kept
+    }
+    if (line[length - 1] == '\r') {
+      length--;
+    }
+    return new String(line, RECIPE_NAME.length, length - RECIPE_NAME.length,
+        StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Adds a recipe that was written to the recipe file. Call {@link #flush()} to write the index.
+   *
+   * @param name the name of the recipe.
+   * @param start the position of the recipe in the recipe file.
+   * @param end the position after the recipe.
+   * @throws IOException if the index file could not be written.
+   */
+  public void add(String name, long start, long end) throws IOException {
+    if (start < indexedEnd) {
+      return; // Already found by scanning the recipe file
+    }
+    Entry entry = new Entry(start, Math.toIntExact(end - start));
+    writer.write(entry.offset() + " " + entry.length() + " " + name);
+    writer.newLine();
+    put(name, entry);
+  }
+
+  private void put(String name, Entry entry) {
+    entries.put(name, entry);
+    indexedEnd = Math.max(indexedEnd, entry.offset() + entry.length());
+  }
+
+  /**
+   * Writes the added entries to the index file.
+   *
+   * @throws IOException if the index file could not be written.
+   */
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  /**
+   * Gets where a recipe is in the recipe file.
+   *
+   * @param name the name of the recipe.
+   * @return the entry, or null if there is no recipe with that name.
+   */
+  public Entry find(String name) {
+    return entries.get(name);
+  }
+
+  /**
+   * Reads a recipe from the recipe file, reading only the bytes of that recipe.
+   *
+   * @param name the name of the recipe.
+   * @return the lines of the recipe, or null if there is no recipe with that name.
+   * @throws IOException if the recipe file could not be read.
+   */
+  public String read(String name) throws IOException {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      return null;
+    }
+    String recipe = readEntry(entry);
+    if (recipe == null || !recipe.lines().findFirst().orElse("").equals("Recipe Name: " + name)) {
+      logger.log(Level.WARNING, "Index of {0} is out of date, building it again", recipeFile);
+      rebuild();
+      entry = entries.get(name);
+      recipe = entry == null ? null : readEntry(entry);
+    }
+    return recipe == null ? null : recipe.stripTrailing();
+  }
+
+  private String readEntry(Entry entry) throws IOException {
+    try (FileChannel channel = FileChannel.open(recipeFile, StandardOpenOption.READ)) {
+      if (entry.offset() + entry.length() > channel.size()) {
+        return null;
+      }
+      ByteBuffer bytes = ByteBuffer.allocate(entry.length());
+      while (bytes.hasRemaining()) {
+        if (channel.read(bytes, entry.offset() + bytes.position()) < 0) {
+          return null;
+        }
+      }
+      return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Writes the index file and closes it.
+   *
+   * @throws IOException if the index file could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
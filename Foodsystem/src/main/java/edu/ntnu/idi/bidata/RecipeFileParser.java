@@ -0,0 +1,237 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Parser for the recipe file written by {@link RecipeManager#writeRecipeToFile}. The file is
+ * memory-mapped and scanned byte by byte, and a String is only created for the fields of a
+ * recipe, so the file is never copied onto the heap as a whole.
+ *
+ * <p>The parser keeps the recipe it is reading between calls to
+ * {@link #parseLines(ByteBuffer, int, int, boolean)}, so a file can be fed to it in parts.
+ * Every recipe starts from scratch at its "Recipe Name:" line, so the file can also be split
+ * at those lines and the parts parsed independently.
+ */
+public class RecipeFileParser {
+  // A single mapping can not be larger than this, so bigger files are mapped in windows
+  private static final long WINDOW_SIZE = Integer.MAX_VALUE;
+  private static final byte[] RECIPE_NAME = ascii("Recipe Name: ");
+  private static final byte[] INGREDIENT = ascii("Ingredient: ");
+  private static final byte[] AMOUNT = ascii(", Amount: ");
+  private static final byte[] PRICE = ascii(", Price: ");
+  private static final byte[] INSTRUCTIONS = ascii("Instructions: ");
+  private static final byte[] NUMBER_OF_PEOPLE = ascii("Number of people: ");
+
+  private final Consumer<Recipe> consumer;
+  private String recipeName;
+  private ArrayList<IngredientInfo> ingredients = new ArrayList<>();
+  private String instructions;
+  private int numberOfPeople;
+
+  /**
+   * Create a new parser.
+   *
+   * @param consumer receives every recipe that is read, in the order of the file.
+   */
+  public RecipeFileParser(Consumer<Recipe> consumer) {
+    this.consumer = consumer;
+  }
+
+  /**
+   * Reads all recipes in a file.
+   *
+   * @param filePath the path of the file.
+   * @param consumer receives every recipe that is read, in the order of the file.
+   * @throws IOException if the file could not be read.
+   */
+  public static void parseFile(String filePath, Consumer<Recipe> consumer) throws IOException {
+    RecipeFileParser parser = new RecipeFileParser(consumer);
+    try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        long length = Math.min(WINDOW_SIZE, size - position);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int consumed = parser.parseLines(buffer, 0, (int) length, position + length == size);
+        if (consumed == 0) {
+          throw new IOException("Line is too long to be mapped in " + filePath);
+        }
+        position += consumed; // The next window starts at the first unfinished line
+      }
+    }
+    parser.finish();
+  }
+
+  /**
+   * Reads all recipes in a file, parsing chunks of the file in parallel. The file is split
+   * right before "Recipe Name:" lines, and the recipes are passed on in the order of the file,
+   * so the result is the same as with {@link #parseFile(String, Consumer)}.
+   *
+   * @param filePath the path of the file.
+   * @param parallelism the number of threads to parse the file with.
+   * @param consumer receives every recipe that is read, in the order of the file.
+   * @throws IOException if the file could not be read.
+   */
+  public static void parseFileInParallel(String filePath, int parallelism,
+                                         Consumer<Recipe> consumer) throws IOException {
+    List<List<Recipe>> chunks = FileChunker.parseInParallel(filePath, 0, parallelism,
+        RECIPE_NAME, chunk -> {
+          List<Recipe> recipes = new ArrayList<>();
+          RecipeFileParser parser = new RecipeFileParser(recipes::add);
+          parser.parseLines(chunk, 0, chunk.limit(), true);
+          parser.finish();
+          return recipes;
+        });
+    chunks.forEach(recipes -> recipes.forEach(consumer));
+  }
+
+  /**
+   * Parses the complete lines in a part of a buffer.
+   *
+   * @param buffer the buffer holding the file content.
+   * @param start the index of the first byte to parse.
+   * @param end the index after the last byte to parse.
+   * @param endOfInput true if a last line without a line break should be parsed as well.
+   * @return the number of bytes parsed, a line that is not finished is left for the next call.
+   */
+  public int parseLines(ByteBuffer buffer, int start, int end, boolean endOfInput) {
+    int lineStart = start;
+    for (int i = start; i < end; i++) {
+      if (buffer.get(i) == '\n') {
+        parseLine(buffer, lineStart, i);
+        lineStart = i + 1;
+      }
+    }
+    if (endOfInput && lineStart < end) {
+      parseLine(buffer, lineStart, end);
+      lineStart = end;
+    }
+    return lineStart - start;
+  }
+
+  /**
+   * Passes on the last recipe that was read. Call this once all input is parsed.
+   */
+  public void finish() {
+    if (recipeName != null) {
+      consumer.accept(new Recipe(recipeName, instructions, ingredients, numberOfPeople));
+      recipeName = null;
+    }
+  }
+
+  private void parseLine(ByteBuffer buffer, int from, int to) {
+    if (to > from && buffer.get(to - 1) == '\r') {
+      to--;
+    }
+    if (startsWith(buffer, from, to, RECIPE_NAME)) {
+      finish();
+      recipeName = string(buffer, from + RECIPE_NAME.length, to);
+      ingredients = new ArrayList<>();
+      instructions = null;
+      numberOfPeople = 0;
+    } else if (startsWith(buffer, from, to, INGREDIENT)) {
+      parseIngredient(buffer, from + INGREDIENT.length, to);
+    } else if (startsWith(buffer, from, to, INSTRUCTIONS)) {
+      instructions = string(buffer, from + INSTRUCTIONS.length, to);
+    } else if (startsWith(buffer, from, to, NUMBER_OF_PEOPLE)) {
+      int numberStart = from + NUMBER_OF_PEOPLE.length;
+      if (isDigits(buffer, numberStart, to)) {
+        numberOfPeople = Integer.parseInt(string(buffer, numberStart, to));
+      }
+    }
+  }
+
+  /**
+   * Parses the part of an ingredient line after "Ingredient: ", which looks like
+   * {@code <name>, Amount: <amount> <unit>, Price: <price>}. Lines that do not have this
+   * form are skipped.
+   */
+  private void parseIngredient(ByteBuffer buffer, int from, int to) {
+    int price = lastIndexOf(buffer, from, to, PRICE);
+    int amount = price < 0 ? -1 : lastIndexOf(buffer, from, price, AMOUNT);
+    if (amount <= from) {
+      return;
+    }
+    int amountStart = amount + AMOUNT.length;
+    int amountEnd = amountStart;
+    while (amountEnd < price && isDigit(buffer.get(amountEnd))) {
+      amountEnd++;
+    }
+    int priceStart = price + PRICE.length;
+    if (amountEnd == amountStart || amountEnd + 1 >= price || buffer.get(amountEnd) != ' '
+        || !isDecimal(buffer, priceStart, to)) {
+      return;
+    }
+    ingredients.add(new IngredientInfo(
+        string(buffer, from, amount),
+        Integer.parseInt(string(buffer, amountStart, amountEnd)),
+        string(buffer, amountEnd + 1, price),
+        Double.parseDouble(string(buffer, priceStart, to))));
+  }
+
+  private static boolean startsWith(ByteBuffer buffer, int from, int to, byte[] prefix) {
+    if (to - from <= prefix.length) {
+      return false; // Every field needs at least one character after the prefix
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer.get(from + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int lastIndexOf(ByteBuffer buffer, int from, int to, byte[] word) {
+    for (int i = to - word.length; i >= from; i--) {
+      int j = 0;
+      while (j < word.length && buffer.get(i + j) == word[j]) {
+        j++;
+      }
+      if (j == word.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static boolean isDigits(ByteBuffer buffer, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (!isDigit(buffer.get(i))) {
+        return false;
+      }
+    }
+    return to > from;
+  }
+
+  private static boolean isDecimal(ByteBuffer buffer, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(i) == '.') {
+        return isDigits(buffer, from, i) && isDigits(buffer, i + 1, to);
+      }
+    }
+    return false;
+  }
+
+  private static String string(ByteBuffer buffer, int from, int to) {
+    byte[] bytes = new byte[to - from];
+    buffer.get(from, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] ascii(String text) {
+    return text.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,431 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Index from ingredient names to the recipes that use them. Every recipe keeps count of how
+ * many of its ingredients are missing from stock, so when the stock of an ingredient changes
+ * only the recipes using that ingredient are looked at, and the recipes that can be made are
+ * the ones with nothing missing. The stock of an ingredient is its total over all batches, see
+ * {@link FoodStorage#getAvailable(String)}.
+ *
+ * <p>Amounts are compared as base quantities, see {@link MeasurementUnit}. The amounts a recipe
+ * needs are turned into base quantities when the recipe is added, and the amount in stock when
+ * the stock changes, so checking an ingredient compares two longs and any unit of the same
+ * dimension matches. Units that are not known are only matched by name.
+ *
+ * <p>With a match distance above 0, an ingredient of a recipe that is not in stock under its own
+ * name uses the ingredient in stock with the closest name within that many letters, so
+ * "tomatos" in a recipe uses "tomatoes" in stock. The names are matched through two
+ * {@link BkTree}s, one over the names in the recipes and one over the names in stock, when a
+ * name comes into or goes out of stock, so looking at the cookable recipes does no matching.
+ *
+ * <p>Every recipe keeps the total price of the ingredients in stock it uses, and the recipes
+ * that can be made are kept sorted by that price. The best k of them are found with a bounded
+ * heap, see {@link #getTopCookable(int, Comparator)}, which stops as soon as the price of the
+ * next recipe shows that no recipe after it can be better.
+ *
+ * <p>The index can listen to a food storage, so the recipes that can be made are kept up to date
+ * as the stock changes and reading them costs nothing. The methods are synchronized, as the
+ * storage may tell the index about changes from several threads.
+ */
+public class RecipeIndex implements StorageListener {
+  private final Map<String, List<Slot>> slotsByIngredient = new HashMap<>();
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final NavigableSet<Entry> cookable = new TreeSet<>(
+      Comparator.comparingDouble((Entry entry) -> entry.cost)
+          .thenComparing(entry -> entry.recipe.name())); // Cheapest first
+  private final Map<String, IngredientInfo> stock = new HashMap<>();
+  private final Map<String, String> stockKeys = new HashMap<>(); // Stock name of each recipe name
+  private final Map<String, Set<String>> matchedBy = new HashMap<>(); // The reverse of stockKeys
+  private BkTree recipeNames; // Names used by the recipes, only kept with a match distance
+  private BkTree stockNames; // Names in stock, only kept with a match distance
+  private int maxDistance;
+  private int maxServings; // Most people any recipe added to the index serves
+
+  /**
+   * A recipe and the state of each of its ingredients.
+   */
+  private static final class Entry {
+    private final Recipe recipe;
+    private final MeasurementUnit[] units; // Unit at each position, null if it is not known
+    private final long[] needed; // Base quantity needed at each position
+    private final boolean[] available; // If the ingredient at each position is in stock
+    private final double[] prices; // Price of the ingredient in stock at each position
+    private int missing;
+    private double cost; // Sum of the prices, changed only while the entry is not in cookable
+
+    private Entry(Recipe recipe) {
+      this.recipe = recipe;
+      List<IngredientInfo> ingredients = recipe.ingredients();
+      this.units = new MeasurementUnit[ingredients.size()];
+      this.needed = new long[units.length];
+      for (int i = 0; i < units.length; i++) {
+        units[i] = MeasurementUnit.parse(ingredients.get(i).unit());
+        needed[i] = baseQuantity(units[i], ingredients.get(i).amount());
+      }
+      this.available = new boolean[units.length];
+      this.prices = new double[available.length];
+      this.missing = available.length;
+    }
+
+    private RecipeSuggestion suggestion() {
+      return new RecipeSuggestion(recipe, cost, recipe.servings());
+    }
+
+    private double totalPrice() {
+      double total = 0.0;
+      for (double price : prices) {
+        total += price;
+      }
+      return total;
+    }
+  }
+
+  /**
+   * One ingredient of a recipe.
+   */
+  private record Slot(Entry entry, int position) {
+  }
+
+  /**
+   * Adds a recipe to the index, replacing a recipe with the same name.
+   *
+   * @param recipe the recipe.
+   */
+  public synchronized void addRecipe(Recipe recipe) {
+    removeRecipe(recipe.name());
+    Entry entry = new Entry(recipe);
+    entries.put(recipe.name(), entry);
+    List<IngredientInfo> ingredients = recipe.ingredients();
+    for (int i = 0; i < ingredients.size(); i++) {
+      String key = FoodStorage.key(ingredients.get(i).name());
+      Slot slot = new Slot(entry, i);
+      List<Slot> slots = slotsByIngredient.get(key);
+      if (slots == null) {
+        slots = new ArrayList<>();
+        slotsByIngredient.put(key, slots);
+        if (recipeNames != null) {
+          recipeNames.add(key);
+        }
+        match(key);
+      }
+      slots.add(slot);
+      update(slot, stockOf(key));
+    }
+    maxServings = Math.max(maxServings, recipe.servings());
+    if (entry.missing == 0) {
+      cookable.add(entry);
+    }
+  }
+
+  /**
+   * Removes a recipe from the index.
+   *
+   * @param recipeName the name of the recipe.
+   */
+  public synchronized void removeRecipe(String recipeName) {
+    Entry entry = entries.remove(recipeName);
+    if (entry == null) {
+      return;
+    }
+    cookable.remove(entry);
+    for (IngredientInfo ingredient : entry.recipe.ingredients()) {
+      String key = FoodStorage.key(ingredient.name());
+      List<Slot> slots = slotsByIngredient.get(key);
+      slots.removeIf(slot -> slot.entry() == entry);
+      if (slots.isEmpty()) {
+        slotsByIngredient.remove(key);
+        if (recipeNames != null) {
+          recipeNames.remove(key);
+        }
+        setStockKey(key, null);
+      }
+    }
+  }
+
+  /**
+   * Updates the stock of an ingredient. Only the recipes using the ingredient are looked at.
+   *
+   * @param name the name of the ingredient.
+   * @param available what is in stock of the ingredient, or null if there is none.
+   */
+  public synchronized void updateIngredient(String name, IngredientInfo available) {
+    String key = FoodStorage.key(name);
+    boolean wasInStock = available == null
+        ? stock.remove(key) != null
+        : stock.put(key, available) != null;
+    boolean inStock = available != null;
+    if (wasInStock == inStock) {
+      matchedBy.getOrDefault(key, Set.of()).forEach(this::refresh); // The matches stay the same
+      return;
+    }
+    if (stockNames != null && inStock) {
+      stockNames.add(key);
+    } else if (stockNames != null) {
+      stockNames.remove(key);
+    }
+    Set<String> affected = new HashSet<>(matchedBy.getOrDefault(key, Set.of()));
+    if (inStock) {
+      affected.addAll(recipeNamesNear(key)); // They may now match this name
+    }
+    affected.forEach(this::match);
+    affected.forEach(this::refresh);
+  }
+
+  /**
+   * Sets the number of letters the name of an ingredient in a recipe may differ from the name
+   * of the ingredient in stock it uses. Every name in the recipes is matched again.
+   *
+   * @param maxDistance the largest number of letters, 0 to only match the same name.
+   */
+  public synchronized void setMaxDistance(int maxDistance) {
+    if (maxDistance < 0) {
+      throw new IllegalArgumentException("Distance must be at least 0");
+    }
+    this.maxDistance = maxDistance;
+    recipeNames = null;
+    stockNames = null;
+    if (maxDistance > 0) {
+      recipeNames = new BkTree();
+      slotsByIngredient.keySet().forEach(recipeNames::add);
+      stockNames = new BkTree();
+      stock.keySet().forEach(stockNames::add);
+    }
+    for (String key : slotsByIngredient.keySet()) {
+      match(key);
+      refresh(key);
+    }
+  }
+
+  public synchronized int getMaxDistance() {
+    return maxDistance;
+  }
+
+  /**
+   * Gets the names in the recipes that are within the match distance of a name.
+   */
+  private Collection<String> recipeNamesNear(String key) {
+    if (recipeNames == null) {
+      return slotsByIngredient.containsKey(key) ? List.of(key) : List.of();
+    }
+    return recipeNames.within(key, maxDistance).stream().map(BkTree.Match::word).toList();
+  }
+
+  /**
+   * Matches a name in the recipes to the name in stock it uses: the same name if it is in
+   * stock, or else the closest name within the match distance.
+   */
+  private void match(String key) {
+    String stockKey = stock.containsKey(key) ? key : null;
+    if (stockKey == null && stockNames != null) {
+      stockKey = stockNames.closest(key, maxDistance);
+    }
+    setStockKey(key, stockKey);
+  }
+
+  private void setStockKey(String key, String stockKey) {
+    String previous = stockKey == null ? stockKeys.remove(key) : stockKeys.put(key, stockKey);
+    if (Objects.equals(previous, stockKey)) {
+      return;
+    }
+    if (previous != null) {
+      Set<String> keys = matchedBy.get(previous);
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        matchedBy.remove(previous);
+      }
+    }
+    if (stockKey != null) {
+      matchedBy.computeIfAbsent(stockKey, k -> new HashSet<>()).add(key);
+    }
+  }
+
+  private IngredientInfo stockOf(String key) {
+    String stockKey = stockKeys.get(key);
+    return stockKey == null ? null : stock.get(stockKey);
+  }
+
+  /**
+   * Updates the recipes that use a name in the recipes to the stock of the name it matches.
+   */
+  private void refresh(String key) {
+    IngredientInfo available = stockOf(key);
+    MeasurementUnit unit = available == null ? null : MeasurementUnit.parse(available.unit());
+    long quantity = available == null ? 0 : baseQuantity(unit, available.amount());
+    for (Slot slot : slotsByIngredient.getOrDefault(key, List.of())) {
+      Entry entry = slot.entry();
+      if (entry.missing == 0) {
+        cookable.remove(entry); // Its cost may change, which moves it in the set
+      }
+      update(slot, available, unit, quantity);
+      if (entry.missing == 0) {
+        cookable.add(entry);
+      }
+    }
+  }
+
+  /**
+   * Updates the stock of every ingredient to match a food storage. Only the ingredients that
+   * are in the storage, or were in stock before, are looked at.
+   *
+   * @param foodStorage the food storage.
+   */
+  public synchronized void updateStock(FoodStorage foodStorage) {
+    Set<String> names = foodStorage.getIngredientNames();
+    for (String name : new ArrayList<>(stock.keySet())) {
+      if (!names.contains(name)) {
+        updateIngredient(name, null);
+      }
+    }
+    for (String name : names) {
+      updateIngredient(name, foodStorage.getAvailable(name));
+    }
+  }
+
+  @Override
+  public synchronized void ingredientChanged(FoodStorage foodStorage, String name) {
+    updateIngredient(name, foodStorage.getAvailable(name));
+  }
+
+  @Override
+  public synchronized void ingredientsReloaded(FoodStorage foodStorage) {
+    updateStock(foodStorage);
+  }
+
+  private static long baseQuantity(MeasurementUnit unit, int amount) {
+    return unit == null ? amount : unit.toBase(amount);
+  }
+
+  /**
+   * Checks if the amount in stock and the amount at a position of a recipe can be compared,
+   * which they can if their units measure the same thing.
+   */
+  private static boolean comparable(IngredientInfo available, MeasurementUnit unit, Entry entry,
+                                    int position) {
+    MeasurementUnit neededUnit = entry.units[position];
+    if (unit != null && neededUnit != null) {
+      return unit.getDimension() == neededUnit.getDimension();
+    }
+    return unit == neededUnit
+        && available.unit().equals(entry.recipe.ingredients().get(position).unit());
+  }
+
+  private static void update(Slot slot, IngredientInfo available) {
+    MeasurementUnit unit = available == null ? null : MeasurementUnit.parse(available.unit());
+    update(slot, available, unit, available == null ? 0 : baseQuantity(unit, available.amount()));
+  }
+
+  private static void update(Slot slot, IngredientInfo available, MeasurementUnit unit,
+                             long quantity) {
+    Entry entry = slot.entry();
+    int position = slot.position();
+    boolean enough = available != null
+        && comparable(available, unit, entry, position)
+        && quantity >= entry.needed[position];
+    if (enough != entry.available[position]) {
+      entry.available[position] = enough;
+      entry.missing += enough ? -1 : 1;
+    }
+    double price = enough ? available.price() : 0.0;
+    if (price != entry.prices[position]) {
+      entry.prices[position] = price;
+      entry.cost = entry.totalPrice();
+    }
+  }
+
+  /**
+   * Gets the recipes that can be made with the ingredients in stock.
+   *
+   * @return the recipes, cheapest first.
+   */
+  public synchronized Collection<Recipe> getCookableRecipes() {
+    return cookable.stream().map(entry -> entry.recipe).toList();
+  }
+
+  /**
+   * Gets the recipes that can be made with the ingredients in stock, with their total cost.
+   *
+   * @return the recipes, cheapest first.
+   */
+  public synchronized List<RecipeSuggestion> getCookable() {
+    List<RecipeSuggestion> suggestions = new ArrayList<>(cookable.size());
+    for (Entry entry : cookable) {
+      suggestions.add(entry.suggestion());
+    }
+    return suggestions;
+  }
+
+  /**
+   * Gets the best recipes that can be made with the ingredients in stock. The recipes are
+   * looked at cheapest first and only the best k are kept, in a heap with the worst of them on
+   * top. For {@link RecipeSuggestion#CHEAPEST_FIRST} and
+   * {@link RecipeSuggestion#CHEAPEST_PER_SERVING} the price of a recipe is a lower bound of
+   * the price of every recipe after it, so the walk stops once that bound is worse than the
+   * worst recipe kept. Other orders look at every recipe that can be made.
+   *
+   * @param k the largest number of recipes to return.
+   * @param order the order of the recipes, best first.
+   * @return the recipes, best first.
+   */
+  public synchronized List<RecipeSuggestion> getTopCookable(int k,
+                                                          Comparator<RecipeSuggestion> order) {
+    if (k <= 0) {
+      return List.of();
+    }
+    PriorityQueue<RecipeSuggestion> best = new PriorityQueue<>(k + 1, order.reversed());
+    for (Entry entry : cookable) {
+      if (best.size() == k && cannotBeat(order, entry.cost, best.peek())) {
+        break;
+      }
+      RecipeSuggestion suggestion = entry.suggestion();
+      if (best.size() < k) {
+        best.add(suggestion);
+      } else if (order.compare(suggestion, best.peek()) < 0) {
+        best.poll();
+        best.add(suggestion);
+      }
+    }
+    RecipeSuggestion[] suggestions = new RecipeSuggestion[best.size()];
+    for (int i = suggestions.length - 1; i >= 0; i--) {
+      suggestions[i] = best.poll();
+    }
+    return List.of(suggestions);
+  }
+
+  /**
+   * Checks if no recipe that costs at least a price can come before a recipe in an order.
+   */
+  private boolean cannotBeat(Comparator<RecipeSuggestion> order, double cost,
+                             RecipeSuggestion worst) {
+    if (order == RecipeSuggestion.CHEAPEST_FIRST) {
+      return cost > worst.totalCost();
+    }
+    if (order == RecipeSuggestion.CHEAPEST_PER_SERVING) {
+      return cost >= 0 && cost / Math.max(1, maxServings) > worst.costPerServing();
+    }
+    return false; // Nothing is known about the order
+  }
+
+  /**
+   * Gets the total price of the ingredients in stock that a recipe uses.
+   *
+   * @param recipeName the name of the recipe.
+   * @return the total price, or 0 if the recipe is not in the index.
+   */
+  public synchronized double getTotalPrice(String recipeName) {
+    Entry entry = entries.get(recipeName);
+    return entry == null ? 0.0 : entry.cost;
+  }
+}
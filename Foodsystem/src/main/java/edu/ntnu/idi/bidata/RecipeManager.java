@@ -1,46 +1,142 @@
 package edu.ntnu.idi.bidata;
 
 import edu.ntnu.idi.bidata.exceptions.RecipeNotFound;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * A class to manage recipes.
+ * A class to manage recipes. The recipe file is kept open for writing, so close the manager
+ * when it is no longer used. Where every recipe is in the file is kept in a
+ * {@link RecipeFileIndex}, so a single recipe can be shown without reading the whole file.
  */
-public class RecipeManager {
+public class RecipeManager implements AutoCloseable {
   private static final Logger logger = Logger.getLogger(RecipeManager.class.getName());
   private final HashMap<String, Recipe> recipes;
+  private final RecipeIndex recipeIndex;
+  private final RecipeSearchIndex searchIndex;
+  private final IngredientNameTrie ingredientNames; // Names in the recipes and the storage
+  private FoodStorage foodStorage; // The storage the indexes listen to
+  private int loadParallelism = 1;
+  private String loadedFilePath; // Path of the recipe file that was last loaded
+  private FileStamp loadedStamp; // Stamp of that file when the recipes were in sync with it
+  private RecipeWriter recipeWriter; // Writer of the recipe file that was last written to
+  private RecipeFileIndex recipeFileIndex; // Index of the recipe file that was last used
 
   /**
    * Create a new RecipeManager.
    */
   public RecipeManager() {
     this.recipes = new HashMap<>();
+    this.recipeIndex = new RecipeIndex();
+    this.searchIndex = new RecipeSearchIndex();
+    this.ingredientNames = new IngredientNameTrie();
+  }
+
+  public int getLoadParallelism() {
+    return loadParallelism;
   }
 
   /**
-   * Adds a new recipe to the recipe manager.
+   * Sets the number of threads used to parse the recipe file when it is loaded.
+   * A parallelism of 1 parses the file on the calling thread.
+   *
+   * @param loadParallelism the number of threads, at least 1.
+   */
+  public void setLoadParallelism(int loadParallelism) {
+    if (loadParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    this.loadParallelism = loadParallelism;
+  }
+
+  public int getMatchDistance() {
+    return recipeIndex.getMaxDistance();
+  }
+
+  /**
+   * Sets the number of letters the name of an ingredient in a recipe may differ from the name
+   * in stock when recipes are suggested, so "tomatos" in a recipe can use "tomatoes" in stock.
+   * See {@link RecipeIndex}.
+   *
+   * @param matchDistance the largest number of letters, 0 to only match the same name.
+   */
+  public void setMatchDistance(int matchDistance) {
+    recipeIndex.setMaxDistance(matchDistance);
+  }
+
+  /**
+   * Adds a new recipe to the recipe manager. The recipe is only kept in memory once it has been
+   * written to the recipe file, so it is not lost on the next reload.
    *
    * @param recipeName the name of the recipe
    * @param ingredientList the list of ingredients for the recipe
    * @param instructions the instructions for the recipe
    * @param numberOfPeople the number of people the recipe serves
+   * @return true if the recipe was added, false if it could not be written
    */
-  public void addRecipe(String recipeName, ArrayList<IngredientInfo> ingredientList,
+  public boolean addRecipe(String recipeName, ArrayList<IngredientInfo> ingredientList,
                         String instructions, int numberOfPeople, String directoryPath) {
-    Recipe recipe = new Recipe(recipeName, instructions, ingredientList, numberOfPeople);
-    recipes.put(recipeName, recipe);
-    writeRecipeToFile(recipeName, ingredientList, instructions, numberOfPeople, directoryPath);
+    if (!writeRecipeToFile(recipeName, ingredientList, instructions, numberOfPeople,
+        directoryPath)) {
+      return false;
+    }
+    putRecipe(new Recipe(recipeName, instructions, ingredientList, numberOfPeople));
+    return true;
+  }
+
+  /**
+   * Adds a number of recipes to the recipe manager. The recipes are written to the recipe file
+   * through one buffered writer and forced to disk once, instead of opening the file for
+   * every recipe. The recipes are only kept in memory once they have all been written.
+   *
+   * @param newRecipes the recipes, in the order they should be written.
+   * @param directoryPath the directory of the recipe file.
+   * @return true if the recipes were written, false otherwise.
+   */
+  public boolean addRecipes(Collection<Recipe> newRecipes, String directoryPath) {
+    String filePath = directoryPath + "/recipes.txt";
+    boolean inSync = isInSync(filePath);
+    long[] bounds = new long[newRecipes.size() + 1];
+    try {
+      RecipeWriter writer = writerFor(filePath);
+      int i = 0;
+      bounds[0] = writer.position();
+      for (Recipe recipe : newRecipes) {
+        writer.write(recipe);
+        bounds[++i] = writer.position();
+      }
+      writer.commit();
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not write recipes to file", e);
+      return false;
+    }
+    newRecipes.forEach(this::putRecipe);
+    int i = 0;
+    for (Recipe recipe : newRecipes) {
+      indexRecipe(filePath, recipe.name(), bounds[i], bounds[++i]);
+    }
+    if (inSync) {
+      loadedStamp = FileStamp.of(filePath);
+    }
+    return true;
+  }
+
+  private void putRecipe(Recipe recipe) {
+    Recipe previous = recipes.put(recipe.name(), recipe);
+    recipeIndex.addRecipe(recipe);
+    searchIndex.addRecipe(recipe);
+    if (previous != null) {
+      previous.ingredients().forEach(ingredient -> ingredientNames.add(ingredient.name(), -1));
+    }
+    recipe.ingredients().forEach(ingredient -> ingredientNames.add(ingredient.name(), 1));
   }
 
   /**
@@ -50,24 +146,118 @@ public class RecipeManager {
    * @param ingredientList the list of ingredients for the recipe
    * @param instructions the instructions for the recipe
    * @param numberOfPeople the number of people the recipe serves
+   * @return true if the recipe was written, false otherwise
    */
-  public void writeRecipeToFile(String recipeName, ArrayList<IngredientInfo> ingredientList,
+  public boolean writeRecipeToFile(String recipeName, ArrayList<IngredientInfo> ingredientList,
                                 String instructions, int numberOfPeople, String directoryPath) {
     String filePath = directoryPath + "/recipes.txt";
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
-      writer.write("Recipe Name: " + recipeName + "\n");
-      for (IngredientInfo ingredient : ingredientList) {
-        writer.write("Ingredient: " + ingredient.name() + ", Amount: " + ingredient.amount()
-            + " " + ingredient.unit() + ", Price: " + ingredient.price() + "\n");
-      }
-      writer.write("Instructions: " + instructions + "\n");
-      writer.write("Number of people: " + numberOfPeople + "\n");
-      writer.write("\n");
-      System.out.println("Recipe added successfully!");
+    boolean inSync = isInSync(filePath); // Only our own write may be skipped on the next load
+    try {
+      RecipeWriter writer = writerFor(filePath);
+      long start = writer.position();
+      writer.write(new Recipe(recipeName, instructions, ingredientList, numberOfPeople));
+      writer.flush(); // The recipe can be read from the file right away
+      indexRecipe(filePath, recipeName, start, writer.position());
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not write recipe to file", e);
+      return false;
+    }
+    if (inSync) {
+      loadedStamp = FileStamp.of(filePath);
+    }
+    return true;
+  }
+
+  /**
+   * Gets the writer of a recipe file, opening it if the last recipe was written to another file.
+   *
+   * @param filePath the path of the file.
+   * @return the writer.
+   * @throws IOException if the file could not be opened.
+   */
+  private RecipeWriter writerFor(String filePath) throws IOException {
+    Path path = Path.of(filePath).toAbsolutePath();
+    if (recipeWriter != null && !recipeWriter.getFilePath().equals(path)) {
+      close();
+    }
+    if (recipeWriter == null) {
+      recipeWriter = new RecipeWriter(path);
+    }
+    return recipeWriter;
+  }
+
+  /**
+   * Adds a recipe that was written to a recipe file to the index of that file. If the index
+   * could not be written, it is closed and catches up from the recipe file when it is opened.
+   */
+  private void indexRecipe(String filePath, String recipeName, long start, long end) {
+    try {
+      RecipeFileIndex index = fileIndexFor(filePath);
+      index.add(recipeName, start, end);
+      index.flush();
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not index recipe", e);
+      closeFileIndex();
+    }
+  }
+
+  /**
+   * Gets the index of a recipe file, opening it if the last index used was of another file.
+   *
+   * @param filePath the path of the recipe file.
+   * @return the index.
+   * @throws IOException if the index could not be opened.
+   */
+  private RecipeFileIndex fileIndexFor(String filePath) throws IOException {
+    Path path = Path.of(filePath).toAbsolutePath();
+    if (recipeFileIndex != null && !recipeFileIndex.getRecipeFile().equals(path)) {
+      closeFileIndex();
+    }
+    if (recipeFileIndex == null) {
+      recipeFileIndex = RecipeFileIndex.open(path);
+    }
+    return recipeFileIndex;
+  }
+
+  private void closeFileIndex() {
+    if (recipeFileIndex == null) {
+      return;
+    }
+    try {
+      recipeFileIndex.close();
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not close recipe index", e);
+    }
+    recipeFileIndex = null;
+  }
+
+  /**
+   * Closes the recipe file, making the recipes written to it durable, and its index.
+   */
+  @Override
+  public void close() {
+    closeFileIndex();
+    if (recipeWriter == null) {
+      return;
+    }
+    try {
+      recipeWriter.close();
     } catch (IOException e) {
-      System.out.println("An error occurred while writing the recipe to the file: "
-          + e.getMessage());
+      logger.log(Level.SEVERE, "Could not close recipe file", e);
     }
+    recipeWriter = null;
+  }
+
+  /**
+   * Checks if the recipes in memory include everything in a recipe file.
+   *
+   * @param filePath the path of the file.
+   * @return true if the recipes were loaded from the file and it has not changed since.
+   */
+  private boolean isInSync(String filePath) {
+    return loadedStamp != null
+        && new File(filePath).getAbsolutePath().equals(loadedFilePath)
+        && loadedStamp.equals(FileStamp.of(filePath));
   }
 
 
@@ -90,6 +280,38 @@ public class RecipeManager {
     return FileHandler.readFromFile(filePath);
   }
 
+  /**
+   * Show one recipe. Only that recipe is read from the file, see {@link RecipeFileIndex}.
+   *
+   * @param filename the name of the file containing the recipe.
+   * @param recipeName the name of the recipe.
+   * @return the lines of the recipe.
+   * @throws RecipeNotFound if there is no recipe with that name.
+   */
+  public String showRecipe(String filename, String recipeName) {
+    String filePath;
+    try {
+      filePath = FileHandler.getResourcePath(filename);
+    } catch (Exception e) {
+      throw new RecipeNotFound("No recipes made yet");
+    }
+    if (filePath == null) {
+      throw new RecipeNotFound("No recipes made yet");
+    }
+    String recipe;
+    try {
+      recipe = fileIndexFor(filePath).read(recipeName);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not read recipe from file", e);
+      closeFileIndex();
+      throw new RecipeNotFound("Could not read the recipe " + recipeName);
+    }
+    if (recipe == null) {
+      throw new RecipeNotFound("No recipe named " + recipeName);
+    }
+    return recipe;
+  }
+
 
 
   /**
@@ -101,28 +323,14 @@ public class RecipeManager {
   public List<String> suggestRecipes(FoodStorage foodStorage, String filename) {
     List<String> suggestedRecipes = new ArrayList<>();
     try {
-      foodStorage.loadIngredientsFromFile("ingredients.txt");
+      listenTo(foodStorage);
+      foodStorage.refreshIngredientsFromFile("ingredients.txt");
       loadRecipesFromFile(filename);
 
-      for (Recipe recipe : recipes.values()) {
-        boolean canMakeRecipe = true;
-        double totalPrice = 0.0;
-        for (IngredientInfo ingredient : recipe.ingredients()) {
-          IngredientInfo availableIngredient = foodStorage.getIngredients(ingredient.name());
-          if (availableIngredient == null
-              || availableIngredient.amount() < ingredient.amount()
-              || !availableIngredient.unit().equals(ingredient.unit())) {
-            canMakeRecipe = false;
-            break;
-          } else {
-            double ingredientPrice = availableIngredient.price();
-            totalPrice += ingredientPrice;
-          }
-        }
-        if (canMakeRecipe) {
-          suggestedRecipes.add(String.format("Recipe: %s, Total Price: %.2f",
-              recipe.name(), totalPrice));
-        }
+      // The index is kept up to date as the stock changes, so this only reads the result
+      for (RecipeSuggestion suggestion : recipeIndex.getCookable()) {
+        suggestedRecipes.add(String.format("Recipe: %s, Total Price: %.2f",
+            suggestion.recipe().name(), suggestion.totalCost()));
       }
     } catch (Exception e) {
       throw new RecipeNotFound("No recipes added yet");
@@ -130,57 +338,106 @@ public class RecipeManager {
     return suggestedRecipes;
   }
 
-  private void loadRecipesFromFile(String filename) {
+  /**
+   * Suggests the best recipes that can be made with the available ingredients, without sorting
+   * all of them, see {@link RecipeIndex#getTopCookable(int, Comparator)}.
+   *
+   * @param foodStorage the food storage containing the available ingredients.
+   * @param filename the name of the file containing the recipes.
+   * @param k the largest number of recipes to suggest.
+   * @param order the order of the recipes, best first, for example
+   *     {@link RecipeSuggestion#CHEAPEST_FIRST}.
+   * @return the recipes with their total cost and servings, best first.
+   */
+  public List<RecipeSuggestion> suggestTopRecipes(FoodStorage foodStorage, String filename, int k,
+                                                  Comparator<RecipeSuggestion> order) {
+    try {
+      listenTo(foodStorage);
+      foodStorage.refreshIngredientsFromFile("ingredients.txt");
+      loadRecipesFromFile(filename);
+      return recipeIndex.getTopCookable(k, order);
+    } catch (Exception e) {
+      throw new RecipeNotFound("No recipes added yet");
+    }
+  }
+
+  /**
+   * Searches the names and instructions of the recipes, see {@link RecipeSearchIndex}.
+   *
+   * @param filename the name of the file containing the recipes.
+   * @param query the words to search for, whole or in part.
+   * @param k the largest number of recipes to return.
+   * @return the recipes that match best, best match first.
+   */
+  public List<Recipe> searchRecipes(String filename, String query, int k) {
+    loadRecipesFromFile(filename);
+    return searchIndex.search(query, k).stream().map(RecipeSearchIndex.Hit::recipe).toList();
+  }
+
+  /**
+   * Completes the start of an ingredient name to the names in the recipes and in a food
+   * storage, see {@link IngredientNameTrie}.
+   *
+   * @param foodStorage the food storage.
+   * @param filename the name of the file containing the recipes.
+   * @param prefix the start of the name, in any case.
+   * @param k the largest number of names to return.
+   * @return the names, the ones used by most recipes first.
+   */
+  public List<String> completeIngredientName(FoodStorage foodStorage, String filename,
+                                             String prefix, int k) {
+    listenTo(foodStorage);
+    loadRecipesFromFile(filename);
+    return ingredientNames.complete(prefix, k);
+  }
+
+  /**
+   * Makes the recipe index and the ingredient names follow a food storage.
+   *
+   * @param foodStorage the food storage.
+   */
+  private void listenTo(FoodStorage foodStorage) {
+    if (this.foodStorage == foodStorage) {
+      return;
+    }
+    if (this.foodStorage != null) {
+      this.foodStorage.removeListener(recipeIndex);
+      this.foodStorage.removeListener(ingredientNames);
+    }
+    this.foodStorage = foodStorage;
+    foodStorage.addListener(recipeIndex);
+    foodStorage.addListener(ingredientNames);
+    recipeIndex.updateStock(foodStorage);
+    ingredientNames.ingredientsReloaded(foodStorage);
+  }
+
+  /**
+   * Loads the recipes in a file into the recipe manager, unless the file has not changed
+   * since it was last loaded.
+   *
+   * @param filename the name of the file containing the recipes.
+   */
+  void loadRecipesFromFile(String filename) {
     String filePath = FileHandler.getResourcePath(filename);
     if (filePath == null) {
       logger.log(Level.SEVERE, "Resource path is null");
       return;
     }
+    if (isInSync(filePath)) {
+      return;
+    }
 
-    try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-      String line;
-      String recipeName = null;
-      ArrayList<IngredientInfo> ingredients = new ArrayList<>();
-      String instructions = null;
-      int numberOfPeople = 0;
-
-      Pattern pattern = Pattern.compile(
-          "Recipe Name: (.+)|Ingredient: (.+), Amount: (\\d+) (.+), Price: (\\d+\\.\\d+)|"
-              + "Instructions: (.+)|Number of people: (\\d+)");
-
-      // Read the content of the file
-      while ((line = reader.readLine()) != null) {
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.matches()) {
-
-          if (matcher.group(1) != null) {
-            if (recipeName != null) {
-              recipes.put(recipeName, new Recipe(recipeName, instructions,
-                  ingredients, numberOfPeople));
-            }
-            recipeName = matcher.group(1);
-            ingredients = new ArrayList<>();
-          } else if (matcher.group(3) != null) {
-
-            String ingredientName = matcher.group(2);
-            int amount = Integer.parseInt(matcher.group(3));
-            String unit = matcher.group(4);
-            double price = Double.parseDouble(matcher.group(5));
-            ingredients.add(new IngredientInfo(ingredientName, amount, unit, price));
-
-          } else if (matcher.group(6) != null) {
-            instructions = matcher.group(6);
-
-          } else if (matcher.group(7) != null) {
-            numberOfPeople = Integer.parseInt(matcher.group(7));
-          }
-        }
-      }
-      if (recipeName != null) {
-        recipes.put(recipeName, new Recipe(recipeName, instructions, ingredients, numberOfPeople));
+    try {
+      if (loadParallelism > 1) {
+        RecipeFileParser.parseFileInParallel(filePath, loadParallelism, this::putRecipe);
+      } else {
+        RecipeFileParser.parseFile(filePath, this::putRecipe);
       }
     } catch (IOException e) {
       logger.log(Level.SEVERE, "Could not read recipes from file", e);
+      return;
     }
+    loadedFilePath = new File(filePath).getAbsolutePath();
+    loadedStamp = FileStamp.of(filePath);
   }
 }
\ No newline at end of file
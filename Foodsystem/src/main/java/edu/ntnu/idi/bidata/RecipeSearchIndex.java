@@ -0,0 +1,354 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Full-text index over the names and instructions of recipes. The text is split into words,
+ * ignoring case, and every word points to the recipes it is in. Words in the name count
+ * {@value #NAME_WEIGHT} times as much as words in the instructions.
+ *
+ * <p>A word in a query also finds the words it is part of, so "choc" finds "chocolate". For
+ * this every word in the index is listed under each of its {@value #GRAM}-letter parts, and
+ * shorter parts are looked up as prefixes. Recipes are ranked by how many of the query words
+ * they have and how rare those words are, and only the best recipes are kept in a bounded heap.
+ * Rare words are scored first. Once the k-th best recipe scores more than the words that are
+ * left could give a recipe, common words only add to the recipes already found, so a query
+ * with a common word does not score every recipe that has it.
+ *
+ * <p>Recipes are added one by one as they are added to the {@link RecipeManager}. A recipe with
+ * the same name as an earlier one replaces it, and adding the same recipe again, like when the
+ * recipe file is reloaded, changes nothing. A replaced recipe is skipped by searches until more
+ * than half of the ids are replaced ones, then the index is built again from the recipes that
+ * are left, so it does not grow with every change. The index is not thread-safe.
+ */
+public class RecipeSearchIndex {
+  private static final int NAME_WEIGHT = 3;
+  private static final int GRAM = 3;
+  private static final float PARTIAL_MATCH = 0.5f;
+  private static final int MAX_PARTIAL_WORDS = 64; // Words a part of a word is expanded into
+
+  private final TreeMap<String, Postings> words = new TreeMap<>();
+  private final Map<String, List<String>> wordsByGram = new HashMap<>();
+  private final List<Recipe> recipes = new ArrayList<>();
+  private final Map<String, Integer> idsByName = new HashMap<>();
+  private final BitSet replaced = new BitSet();
+  private int replacedCount;
+  private float[] scores = new float[16]; // Reused by every query, all 0 between queries
+  private int[] touched = new int[16];
+
+  /**
+   * A recipe that matches a query.
+   *
+   * @param recipe the recipe.
+   * @param score how well it matches, higher is better.
+   */
+  public record Hit(Recipe recipe, double score) {
+  }
+
+  /**
+   * The recipes a word is in, by id, with how many times the word counts in each.
+   */
+  private static final class Postings {
+    private int[] ids = new int[4];
+    private int[] weights = new int[4];
+    private int size;
+    private int maxWeight;
+
+    private void add(int id, int weight) {
+      if (size > 0 && ids[size - 1] == id) {
+        weights[size - 1] += weight; // Recipes are added in order of id
+      } else {
+        if (size == ids.length) {
+          ids = Arrays.copyOf(ids, size * 2);
+          weights = Arrays.copyOf(weights, size * 2);
+        }
+        ids[size] = id;
+        weights[size] = weight;
+        size++;
+      }
+      maxWeight = Math.max(maxWeight, weights[size - 1]);
+    }
+  }
+
+  /**
+   * A word to score for a query.
+   *
+   * @param postings the recipes the word is in.
+   * @param weight what one count of the word adds to a score.
+   * @param upperBound the most the word can add to the score of a recipe.
+   */
+  private record Term(Postings postings, float weight, float upperBound) {
+  }
+
+  /**
+   * Adds a recipe, replacing a recipe with the same name.
+   *
+   * @param recipe the recipe.
+   */
+  public void addRecipe(Recipe recipe) {
+    Integer previous = idsByName.get(recipe.name());
+    if (previous != null && recipes.get(previous).equals(recipe)) {
+      return; // Nothing to index again
+    }
+    int id = recipes.size();
+    recipes.add(recipe);
+    idsByName.put(recipe.name(), id);
+    addWords(recipe.name(), id, NAME_WEIGHT);
+    if (recipe.instructions() != null) {
+      addWords(recipe.instructions(), id, 1);
+    }
+    if (previous != null) {
+      replaced.set(previous);
+      replacedCount++;
+      if (replacedCount * 2 > recipes.size()) {
+        compact();
+      }
+    }
+  }
+
+  /**
+   * Builds the index again from the recipes that were not replaced, in the order of their ids.
+   */
+  private void compact() {
+    List<Recipe> live = new ArrayList<>(size());
+    for (int id = 0; id < recipes.size(); id++) {
+      if (!replaced.get(id)) {
+        live.add(recipes.get(id));
+      }
+    }
+    words.clear();
+    wordsByGram.clear();
+    recipes.clear();
+    idsByName.clear();
+    replaced.clear();
+    replacedCount = 0;
+    live.forEach(this::addRecipe);
+  }
+
+  private void addWords(String text, int id, int weight) {
+    for (String word : tokenize(text)) {
+      Postings postings = words.get(word);
+      if (postings == null) {
+        postings = new Postings();
+        words.put(word, postings);
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+          wordsByGram.computeIfAbsent(word.substring(i, i + GRAM), gram -> new ArrayList<>(2))
+              .add(word);
+        }
+      }
+      postings.add(id, weight);
+    }
+  }
+
+  /**
+   * Gets the number of recipes in the index.
+   *
+   * @return the number of recipes.
+   */
+  public int size() {
+    return recipes.size() - replacedCount;
+  }
+
+  /**
+   * Finds the recipes that best match a query.
+   *
+   * @param query the words to search for, whole or in part.
+   * @param k the largest number of recipes to return.
+   * @return the recipes, best match first.
+   */
+  public List<Hit> search(String query, int k) {
+    List<String> queryWords = tokenize(query);
+    if (k <= 0 || queryWords.isEmpty()) {
+      return List.of();
+    }
+    if (scores.length < recipes.size()) {
+      scores = new float[Math.max(recipes.size(), scores.length * 2)];
+    }
+    List<Term> terms = new ArrayList<>();
+    for (String queryWord : queryWords) {
+      Postings exact = words.get(queryWord);
+      if (exact != null) {
+        terms.add(term(exact, 1.0f));
+      }
+      for (String word : partialMatches(queryWord)) {
+        terms.add(term(words.get(word), PARTIAL_MATCH));
+      }
+    }
+    terms.sort(Comparator.comparingDouble(Term::upperBound).reversed());
+    float left = 0; // The most the terms that are not scored yet can add
+    for (Term term : terms) {
+      left += term.upperBound();
+    }
+    int touchedCount = 0;
+    for (Term term : terms) {
+      boolean onlyFound = touchedCount >= k && kthBestScore(touchedCount, k) > left;
+      touchedCount = onlyFound ? scoreFound(term, touchedCount) : score(term, touchedCount);
+      left -= term.upperBound();
+    }
+
+    // The worst of the best k recipes is on top, so it is the one pushed out
+    Comparator<Integer> byScore = Comparator.<Integer>comparingDouble(id -> scores[id])
+        .thenComparing(Comparator.<Integer>naturalOrder().reversed());
+    PriorityQueue<Integer> best = new PriorityQueue<>(k + 1, byScore);
+    for (int i = 0; i < touchedCount; i++) {
+      int id = touched[i];
+      if (best.size() < k) {
+        best.add(id);
+      } else if (byScore.compare(id, best.peek()) > 0) {
+        best.poll();
+        best.add(id);
+      }
+    }
+    Hit[] hits = new Hit[best.size()];
+    for (int i = hits.length - 1; i >= 0; i--) {
+      int id = best.poll();
+      hits[i] = new Hit(recipes.get(id), scores[id]);
+    }
+    for (int i = 0; i < touchedCount; i++) {
+      scores[touched[i]] = 0;
+    }
+    return List.of(hits);
+  }
+
+  /**
+   * Weighs a word of a query. Rare words score higher.
+   */
+  private Term term(Postings postings, float match) {
+    float weight = match * (float) Math.log(1 + (double) recipes.size() / postings.size);
+    return new Term(postings, weight, weight * postings.maxWeight);
+  }
+
+  /**
+   * Gets the k-th best score of the recipes found so far.
+   */
+  private float kthBestScore(int touchedCount, int k) {
+    PriorityQueue<Float> best = new PriorityQueue<>(k + 1);
+    for (int i = 0; i < touchedCount; i++) {
+      float score = scores[touched[i]];
+      if (best.size() < k) {
+        best.add(score);
+      } else if (score > best.peek()) {
+        best.poll();
+        best.add(score);
+      }
+    }
+    return best.peek();
+  }
+
+  /**
+   * Adds the score of a word to the recipes it is in.
+   *
+   * @return the number of recipes with a score.
+   */
+  private int score(Term term, int touchedCount) {
+    Postings postings = term.postings();
+    float weight = term.weight();
+    for (int i = 0; i < postings.size; i++) {
+      int id = postings.ids[i];
+      if (replaced.get(id)) {
+        continue;
+      }
+      if (scores[id] == 0) {
+        if (touchedCount == touched.length) {
+          touched = Arrays.copyOf(touched, touchedCount * 2);
+        }
+        touched[touchedCount++] = id;
+      }
+      scores[id] += weight * postings.weights[i];
+    }
+    return touchedCount;
+  }
+
+  /**
+   * Adds the score of a word to the recipes found so far that have it, looking each of them up
+   * in the recipes of the word if there are fewer of them.
+   *
+   * @return the number of recipes with a score, which does not change.
+   */
+  private int scoreFound(Term term, int touchedCount) {
+    Postings postings = term.postings();
+    if ((long) touchedCount * (32 - Integer.numberOfLeadingZeros(postings.size)) >= postings.size) {
+      for (int i = 0; i < postings.size; i++) {
+        int id = postings.ids[i];
+        if (scores[id] != 0) {
+          scores[id] += term.weight() * postings.weights[i];
+        }
+      }
+      return touchedCount;
+    }
+    for (int i = 0; i < touchedCount; i++) {
+      int id = touched[i];
+      int position = Arrays.binarySearch(postings.ids, 0, postings.size, id);
+      if (position >= 0) {
+        scores[id] += term.weight() * postings.weights[position];
+      }
+    }
+    return touchedCount;
+  }
+
+  /**
+   * Finds the words in the index that a query word is part of, other than the word itself.
+   */
+  private List<String> partialMatches(String queryWord) {
+    List<String> matches = new ArrayList<>();
+    if (queryWord.length() < GRAM) {
+      for (String word : words.subMap(queryWord, false, queryWord + Character.MAX_VALUE, false)
+          .keySet()) {
+        if (matches.size() == MAX_PARTIAL_WORDS) {
+          break;
+        }
+        matches.add(word);
+      }
+      return matches;
+    }
+    List<String> candidates = null; // The words listed under the rarest part of the query word
+    for (int i = 0; i + GRAM <= queryWord.length(); i++) {
+      List<String> withGram = wordsByGram.get(queryWord.substring(i, i + GRAM));
+      if (withGram == null) {
+        return matches;
+      }
+      if (candidates == null || withGram.size() < candidates.size()) {
+        candidates = withGram;
+      }
+    }
+    for (String word : candidates) {
+      if (matches.size() == MAX_PARTIAL_WORDS) {
+        break;
+      }
+      if (!word.equals(queryWord) && word.contains(queryWord)) {
+        matches.add(word);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Splits a text into lower-case words of letters and digits.
+   *
+   * @param text the text.
+   * @return the words, in order.
+   */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+}
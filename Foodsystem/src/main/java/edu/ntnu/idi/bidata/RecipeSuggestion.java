@@ -0,0 +1,36 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.Comparator;
+
+/**
+ * A recipe that can be made with the ingredients in stock.
+ *
+ * @param recipe the recipe.
+ * @param totalCost the total price of the ingredients in stock that the recipe uses.
+ * @param servings the number of people the recipe serves.
+ */
+public record RecipeSuggestion(Recipe recipe, double totalCost, int servings) {
+
+  /**
+   * Cheapest first, then by name.
+   */
+  public static final Comparator<RecipeSuggestion> CHEAPEST_FIRST =
+      Comparator.comparingDouble(RecipeSuggestion::totalCost)
+          .thenComparing(suggestion -> suggestion.recipe().name());
+
+  /**
+   * Cheapest per serving first, then by name.
+   */
+  public static final Comparator<RecipeSuggestion> CHEAPEST_PER_SERVING =
+      Comparator.comparingDouble(RecipeSuggestion::costPerServing)
+          .thenComparing(suggestion -> suggestion.recipe().name());
+
+  /**
+   * Gets the cost of the recipe per person it serves.
+   *
+   * @return the total cost divided by the servings, or the total cost if it serves no one.
+   */
+  public double costPerServing() {
+    return servings > 0 ? totalCost / servings : totalCost;
+  }
+}
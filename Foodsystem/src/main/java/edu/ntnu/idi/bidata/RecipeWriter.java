@@ -0,0 +1,156 @@
+package edu.ntnu.idi.bidata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends recipes to a recipe file through a channel that is kept open. Recipes are encoded
+ * into a buffer that is written to the file when it is full or flushed, so many recipes cost
+ * a few large writes instead of opening the file for each of them.
+ *
+ * <p>{@link #commit()} makes the recipes written so far durable. Commits from several threads
+ * are grouped: while one thread forces the file to disk, the others wait, and a commit whose
+ * recipes were covered by that force returns without forcing again.
+ */
+public class RecipeWriter implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Path filePath;
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final Object forceLock = new Object();
+  private final long start; // Size of the file when it was opened
+  private long written; // Bytes handed to the channel
+  private long durable; // Bytes known to be on disk, guarded by forceLock
+
+  /**
+   * Opens a recipe file for appending, creating it if it does not exist.
+   *
+   * @param filePath the path of the file.
+   * @throws IOException if the file could not be opened.
+   */
+  public RecipeWriter(Path filePath) throws IOException {
+    this.filePath = filePath.toAbsolutePath();
+    this.channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    this.start = channel.size();
+  }
+
+  public Path getFilePath() {
+    return filePath;
+  }
+
+  /**
+   * Formats a recipe the way it is stored in the recipe file.
+   *
+   * @param recipe the recipe.
+   * @return the lines of the recipe, followed by an empty line.
+   */
+  public static String format(Recipe recipe) {
+    StringBuilder text = new StringBuilder();
+    text.append("Recipe Name: ").append(recipe.name()).append('\n');
+    for (IngredientInfo ingredient : recipe.ingredients()) {
+      text.append("Ingredient: ").append(ingredient.name())
+          .append(", Amount: ").append(ingredient.amount())
+          .append(' ').append(ingredient.unit())
+          .append(", Price: ").append(ingredient.price()).append('\n');
+    }
+    text.append("Instructions: ").append(recipe.instructions()).append('\n');
+    text.append("Number of people: ").append(recipe.servings()).append('\n');
+    text.append('\n');
+    return text.toString();
+  }
+
+  /**
+   * Gets the position in the file the next recipe is written at, counting the recipes that are
+   * still in the buffer.
+   *
+   * @return the position.
+   */
+  public synchronized long position() {
+    return start + written + buffer.position();
+  }
+
+  /**
+   * Adds a recipe to the buffer. It reaches the file when the buffer is full or flushed.
+   *
+   * @param recipe the recipe.
+   * @throws IOException if the buffer could not be written to the file.
+   */
+  public synchronized void write(Recipe recipe) throws IOException {
+    byte[] bytes = format(recipe).getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > buffer.remaining()) {
+      flushBuffer();
+    }
+    if (bytes.length > buffer.capacity()) {
+      writeFully(ByteBuffer.wrap(bytes));
+    } else {
+      buffer.put(bytes);
+    }
+  }
+
+  /**
+   * Writes the buffered recipes to the file, without waiting for them to reach the disk.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  public synchronized void flush() throws IOException {
+    flushBuffer();
+  }
+
+  /**
+   * Writes the buffered recipes to the file and forces them to disk, unless a commit from
+   * another thread already did.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  public void commit() throws IOException {
+    long target;
+    synchronized (this) {
+      flushBuffer();
+      target = written;
+    }
+    synchronized (forceLock) {
+      if (durable >= target) {
+        return; // Forced by the commit that ran while this one waited
+      }
+      long covered;
+      synchronized (this) {
+        covered = written; // Everything handed to the channel so far is forced below
+      }
+      channel.force(false);
+      durable = covered;
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    buffer.flip();
+    writeFully(buffer);
+    buffer.clear();
+  }
+
+  private void writeFully(ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      written += channel.write(bytes);
+    }
+  }
+
+  /**
+   * Commits the buffered recipes and closes the file.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      commit();
+    } finally {
+      channel.close();
+    }
+  }
+}
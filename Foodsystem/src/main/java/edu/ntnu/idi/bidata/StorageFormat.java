@@ -0,0 +1,16 @@
+package edu.ntnu.idi.bidata;
+
+/**
+ * The formats the ingredients file can be compacted into.
+ */
+public enum StorageFormat {
+  /**
+   * Every batch is written as a readable text record, see {@link IngredientLog}.
+   */
+  TEXT,
+  /**
+   * The batches are written to a binary snapshot next to the log, see
+   * {@link BinaryIngredientFormat}, and the log only refers to it.
+   */
+  BINARY
+}
@@ -0,0 +1,23 @@
+package edu.ntnu.idi.bidata;
+
+/**
+ * Listener that is told when the ingredients in a food storage change.
+ */
+public interface StorageListener {
+
+  /**
+   * Called after the batches of an ingredient have changed.
+   *
+   * @param foodStorage the storage that changed.
+   * @param name the name of the ingredient.
+   */
+  void ingredientChanged(FoodStorage foodStorage, String name);
+
+  /**
+   * Called after all ingredients in the storage have been replaced, for example when it is
+   * cleared or loaded from a file.
+   *
+   * @param foodStorage the storage that changed.
+   */
+  void ingredientsReloaded(FoodStorage foodStorage);
+}
@@ -0,0 +1,111 @@
+package edu.ntnu.idi.bidata;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary that gives every distinct string a small int id, counting from 0. Looking up a
+ * string allocates nothing: the table is open addressing over int arrays, and strings can be
+ * compared without regard to case without making a lower-case copy.
+ */
+final class StringDictionary {
+  private final boolean ignoreCase;
+  private String[] words = new String[16];
+  private int size;
+  private int[] table = new int[32]; // Id + 1 of the word in each slot, 0 if the slot is empty
+
+  /**
+   * Create a new dictionary.
+   *
+   * @param ignoreCase true if strings that only differ in case get the same id.
+   */
+  StringDictionary(boolean ignoreCase) {
+    this.ignoreCase = ignoreCase;
+  }
+
+  /**
+   * Gets the id of a string.
+   *
+   * @param word the string.
+   * @return the id, or -1 if the string is not in the dictionary.
+   */
+  int idOf(String word) {
+    int mask = table.length - 1;
+    for (int slot = hash(word) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      if (matches(words[table[slot] - 1], word)) {
+        return table[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds a string if it is not in the dictionary yet.
+   *
+   * @param word the string.
+   * @return the id of the string.
+   */
+  int add(String word) {
+    int id = idOf(word);
+    if (id >= 0) {
+      return id;
+    }
+    if (size == words.length) {
+      words = Arrays.copyOf(words, size * 2);
+    }
+    words[size] = word;
+    insert(size);
+    size++;
+    if (size * 2 > table.length) {
+      rehash();
+    }
+    return size - 1;
+  }
+
+  /**
+   * Gets the string with an id. When case is ignored, this is the first spelling added.
+   *
+   * @param id the id.
+   * @return the string.
+   */
+  String word(int id) {
+    return words[id];
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void insert(int id) {
+    int mask = table.length - 1;
+    int slot = hash(words[id]) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = id + 1;
+  }
+
+  private void rehash() {
+    table = new int[table.length * 2];
+    for (int id = 0; id < size; id++) {
+      insert(id);
+    }
+  }
+
+  private boolean matches(String stored, String word) {
+    return ignoreCase ? stored.equalsIgnoreCase(word) : stored.equals(word);
+  }
+
+  private int hash(String word) {
+    int hash;
+    if (ignoreCase) {
+      hash = 0;
+      for (int i = 0; i < word.length(); i++) {
+        // Consistent with equalsIgnoreCase, which compares the upper and lower case of a char
+        hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(word.charAt(i)));
+      }
+    } else {
+      hash = word.hashCode();
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
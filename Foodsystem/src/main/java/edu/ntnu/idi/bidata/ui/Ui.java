@@ -5,6 +5,8 @@ import edu.ntnu.idi.bidata.FileHandler;
 import edu.ntnu.idi.bidata.FoodStorage;
 import edu.ntnu.idi.bidata.Ingredient;
 import edu.ntnu.idi.bidata.IngredientInfo;
+import edu.ntnu.idi.bidata.MeasurementUnit;
+import edu.ntnu.idi.bidata.RecipeSuggestion;
 import edu.ntnu.idi.bidata.exceptions.IngredientNotFound;
 import edu.ntnu.idi.bidata.exceptions.RecipeNotFound;
 import java.time.LocalDate;
@@ -29,6 +31,10 @@ public class Ui {
   private static final int RECOMMEND_DISHES = 7;
   private static final int EXIT = 8;
 
+  private static final int NAME_SUGGESTIONS = 5; // Known names shown for a typed name
+  private static final int MATCH_DISTANCE = 1; // Letters a misspelled ingredient name may differ
+  private static final int RECIPE_SUGGESTIONS = 10; // Cheapest recipes shown
+
   private FoodStorage foodStorage;
   private Scanner scanner;
   private CookBook cookBook;
@@ -41,6 +47,7 @@ public class Ui {
     scanner = new Scanner(System.in); // Scanner to read input from the user
     foodStorage = new FoodStorage();
     cookBook = new CookBook("MyCookBook");
+    cookBook.getRecipeManager().setMatchDistance(MATCH_DISTANCE);
     System.out.println("Welcome to the Food Storage System!");
   }
 
@@ -102,7 +109,6 @@ public class Ui {
       case SHOW_ALL_INGREDIENTS ->
         {
           System.out.println("Showing all ingredients");
-          foodStorage.clearIngredients(); // Clear the ingredients
           try {
             handleShowAllIngredients();
           } catch (IngredientNotFound ingredientNotFound) {
@@ -147,6 +153,7 @@ public class Ui {
       case EXIT ->
         {
         System.out.println("Exiting");
+        cookBook.getRecipeManager().close(); // Makes the added recipes durable
         return false;
         }
       default -> System.out.println("Invalid choice");
@@ -163,15 +170,10 @@ public class Ui {
     // Prompt the user for ingredient details
     System.out.println("What's your ingredient name?");
     final String name = scanner.nextLine().trim();
+    showKnownNames(name);
 
-    System.out.println("What unit? \n 1. Gram \n 2. Liter \n 3. Pieces");
-    String unitType = scanner.nextLine();
-    String unit = switch (unitType) {
-      case "1" -> "Gram";
-      case "2" -> "Liter";
-      case "3" -> "Pieces";
-      default -> null;
-    };
+    System.out.println(unitMenu());
+    String unit = unitChoice(scanner.nextLine());
 
     System.out.println("How many " + unit + " do you have?");
     int numberOfUnits;
@@ -211,6 +213,54 @@ public class Ui {
     }
   }
 
+  /**
+   * Shows the known ingredient names that start with a name the user typed, unless the name is
+   * one of them.
+   *
+   * @param name the name the user typed.
+   */
+  private void showKnownNames(String name) {
+    if (name.isEmpty()) {
+      return;
+    }
+    List<String> names = cookBook.getRecipeManager()
+        .completeIngredientName(foodStorage, "recipes.txt", name, NAME_SUGGESTIONS);
+    if (!names.isEmpty() && names.stream().noneMatch(name::equalsIgnoreCase)) {
+      System.out.println("Known ingredients starting with \"" + name + "\": "
+          + String.join(", ", names));
+    }
+  }
+
+  /**
+   * Builds the menu of units the user can choose from.
+   *
+   * @return the menu.
+   */
+  private static String unitMenu() {
+    StringBuilder menu = new StringBuilder("What unit?");
+    MeasurementUnit[] units = MeasurementUnit.values();
+    for (int i = 0; i < units.length; i++) {
+      menu.append(" \n ").append(i + 1).append(". ").append(units[i].getDisplayName());
+    }
+    return menu.toString();
+  }
+
+  /**
+   * Gets the unit the user chose from the menu.
+   *
+   * @param choice the number the user entered.
+   * @return the name of the unit, or null if the choice is not on the menu.
+   */
+  private static String unitChoice(String choice) {
+    MeasurementUnit[] units = MeasurementUnit.values();
+    try {
+      int index = Integer.parseInt(choice.trim()) - 1;
+      return index >= 0 && index < units.length ? units[index].getDisplayName() : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
   /**
    * Handle the user's choice to remove an ingredient.
    */
@@ -225,8 +275,13 @@ public class Ui {
       return;
     }
 
+    foodStorage.refreshIngredientsFromFile("ingredients.txt");
     if (!foodStorage.ingredientExists(name)) {
-      System.out.println("Ingredient not found.");
+      String closest = foodStorage.findClosestName(name, MATCH_DISTANCE);
+      System.out.println(closest == null ? "Ingredient not found."
+          : "Ingredient not found. Did you mean \"" + foodStorage.getIngredients(closest).name()
+              + "\"?");
+      showKnownNames(name);
       return;
     }
 
@@ -264,7 +319,7 @@ public class Ui {
    */
   public void handleShowAllIngredients() {
     try {
-      foodStorage.loadIngredientsFromFile("ingredients.txt");
+      foodStorage.refreshIngredientsFromFile("ingredients.txt");
       System.out.printf("%-20s %-20s %-10s %-10s %-15s%n", "Name", "Number of Units",
           "Unit", "Price", "Expiration Date");
       System.out.println("-----------------------------------------------"
@@ -336,21 +391,13 @@ public class Ui {
           System.out.println("Ingredient name cannot be empty.");
           continue;
         }
+        showKnownNames(ingredientName);
 
-        System.out.println("What unit? \n 1. Gram \n 2. Liter \n 3. Pieces");
-        String unitType = scanner.nextLine();
-        String unit = switch (unitType) {
-          case "1" -> "Gram";
-          case "2" -> "Liter";
-          case "3" -> "Pieces";
-          default ->
-            {
-            System.out.println("Invalid choice. Please enter 1, 2, or 3.");
-            yield null;
-            }
-        };
-
+        System.out.println(unitMenu());
+        String unit = unitChoice(scanner.nextLine());
         if (unit == null) {
+          System.out.println("Invalid choice. Please enter a number from 1 to "
+              + MeasurementUnit.values().length + ".");
           continue;
         }
 
@@ -412,8 +459,12 @@ public class Ui {
     }
 
     String directoryPath = FileHandler.getResourcePath(""); // Get the directory path
-    cookBook.getRecipeManager().addRecipe(recipeName, ingredientList, recipeInstructions,
-        numberOfPeople, directoryPath);
+    if (cookBook.getRecipeManager().addRecipe(recipeName, ingredientList, recipeInstructions,
+        numberOfPeople, directoryPath)) {
+      System.out.println("Recipe added successfully!");
+    } else {
+      System.out.println("An error occurred while writing the recipe to the file.");
+    }
   }
 
   /**
@@ -421,9 +472,14 @@ public class Ui {
    */
 
   public void handleShowRecipe() {
+    Scanner scanner = new Scanner(System.in);
     String filename = "recipes.txt";
+    System.out.println("Which recipe do you want to see? (leave empty to show all)");
+    String recipeName = scanner.nextLine().trim();
     try {
-      String content = cookBook.getRecipeManager().showRecipe(filename);
+      String content = recipeName.isEmpty()
+          ? cookBook.getRecipeManager().showRecipe(filename)
+          : cookBook.getRecipeManager().showRecipe(filename, recipeName);
       System.out.println(content);
     } catch (RecipeNotFound e) {
       System.out.println(e.getMessage());
@@ -436,13 +492,15 @@ public class Ui {
   public void handleSuggestRecipes() {
     String filename = "recipes.txt";
     try {
-      List<String> suggestedRecipes = cookBook.getRecipeManager()
-              .suggestRecipes(foodStorage, filename);
+      List<RecipeSuggestion> suggestedRecipes = cookBook.getRecipeManager().suggestTopRecipes(
+          foodStorage, filename, RECIPE_SUGGESTIONS, RecipeSuggestion.CHEAPEST_FIRST);
       if (suggestedRecipes.isEmpty()) {
         System.out.println("No recipes can be made with the available ingredients.");
       } else {
-        System.out.println("You can make the following recipes: \n");
-        for (String recipe : suggestedRecipes) {
+        System.out.println("The cheapest recipes you can make: \n");
+        for (RecipeSuggestion suggestion : suggestedRecipes) {
+          String recipe = String.format("Recipe: %s, Total Price: %.2f, Serves: %d",
+              suggestion.recipe().name(), suggestion.totalCost(), suggestion.servings());
           System.out.println("\u001B[32m" + recipe + "\u001B[0m" + "\n");
         }
       }
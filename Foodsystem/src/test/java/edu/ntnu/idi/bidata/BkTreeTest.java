@@ -0,0 +1,40 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BkTreeTest {
+
+    @Test
+    void testDistanceCountsInsertsDeletesAndChanges() {
+        assertEquals(0, BkTree.distance("milk", "milk"));
+        assertEquals(1, BkTree.distance("tomatos", "tomatoes"));
+        assertEquals(3, BkTree.distance("kitten", "sitting"));
+        assertEquals(4, BkTree.distance("", "salt"));
+    }
+
+    @Test
+    void testFindsTheWordsWithinADistance() {
+        BkTree tree = new BkTree();
+        for (String word : List.of("tomatoes", "potatoes", "tomato", "pasta", "basil", "tomatoes")) {
+            tree.add(word);
+        }
+
+        assertEquals(5, tree.size(), "A word added twice should be kept once.");
+        assertEquals(List.of(new BkTree.Match("tomato", 1), new BkTree.Match("tomatoes", 1)), tree.within("tomatos", 1),
+                "Words as close should be in alphabetical order.");
+        assertEquals(List.of("tomato", "tomatoes", "potatoes"), tree.within("tomatos", 3).stream().map(BkTree.Match::word).toList());
+        assertEquals("pasta", tree.closest("pastas", 2));
+        assertNull(tree.closest("flour", 2));
+
+        assertTrue(tree.remove("tomatoes"));
+        assertFalse(tree.remove("tomatoes"));
+        assertEquals(List.of("tomato"), tree.within("tomatos", 1).stream().map(BkTree.Match::word).toList(),
+                "A removed word should not be found.");
+        assertEquals(List.of("potatoes"), tree.within("potatoes", 0).stream().map(BkTree.Match::word).toList(),
+                "Words below a removed word should still be found.");
+    }
+}
@@ -0,0 +1,82 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarInventoryTest {
+
+    @Test
+    void testLookupAndRemovalMatchFoodStorage() {
+        List<Ingredient> batches = List.of(
+                new Ingredient("Sugar", "Gram", 500, 2.5, LocalDate.of(2024, 12, 5)),
+                new Ingredient("Butter", "Gram", 250, 30.0, LocalDate.of(2024, 12, 1)),
+                new Ingredient("sugar", "Gram", 100, 1.0, LocalDate.of(2024, 11, 30)),
+                new Ingredient("Sugar", "Kilogram", 1, 9.0, LocalDate.of(2024, 12, 10)),
+                new Ingredient("Butter", "Kilogram", 1, 80.0, LocalDate.of(2024, 12, 20)));
+        ColumnarInventory inventory = ColumnarInventory.of(batches);
+        FoodStorage foodStorage = new FoodStorage();
+        batches.forEach(foodStorage::addIngredientDirectly);
+
+        assertEquals(new IngredientInfo("sugar", 100, "Gram", 1.0), inventory.getIngredients("SUGAR"),
+                "The batch expiring first should be used first.");
+        int[] removals = {200, 300, 0, 2, 1};
+        for (int units : removals) {
+            assertEquals(foodStorage.applyRemoval("Sugar", units), inventory.removeUnits("Sugar", units),
+                    "Removing " + units + " should succeed or fail like in FoodStorage.");
+            assertEquals(foodStorage.getIngredients("Sugar"), inventory.getIngredients("Sugar"));
+        }
+        assertFalse(inventory.contains("Sugar"), "Taking all units should remove the last batch.");
+
+        assertEquals(foodStorage.applyRemoval("Butter", 400), inventory.removeUnits("Butter", 400));
+        assertEquals(new IngredientInfo("Butter", 850, "Gram", 80.0), inventory.getIngredients("Butter"),
+                "What is left of the kilogram should be kept in grams.");
+        assertEquals(foodStorage.getIngredients("Butter"), inventory.getIngredients("Butter"));
+        assertNull(inventory.getIngredients("Flour"));
+        assertEquals(1, inventory.size());
+    }
+
+    @Test
+    void testCursorScansBatchesInOrder() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        inventory.add("Milk", "Liter", 1, 20.0, LocalDate.of(2024, 11, 1));
+        inventory.add("Egg", "Pieces", 6, 30.0, LocalDate.of(2024, 12, 1));
+        inventory.add("Milk", "Liter", 2, 22.0, LocalDate.of(2024, 12, 3));
+
+        ColumnarInventory.Batch batch = inventory.cursor();
+        List<String> names = new ArrayList<>();
+        while (batch.next()) {
+            names.add(batch.name());
+        }
+        assertEquals(List.of("Milk", "Egg", "Milk"), names);
+
+        assertTrue(batch.moveToFirst("milk"));
+        assertEquals(1, batch.numberOfUnits());
+        assertTrue(batch.nextOfSameName());
+        assertEquals(LocalDate.of(2024, 12, 3), batch.expirationDate());
+        assertFalse(batch.nextOfSameName());
+
+        assertEquals(1, inventory.countExpiringBefore(LocalDate.of(2024, 11, 15).toEpochDay()));
+        assertEquals(72.0, inventory.totalPrice());
+    }
+
+    @Test
+    void testCompactionKeepsOrderOfRemainingBatches() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        for (int i = 0; i < 5000; i++) {
+            inventory.add("Item " + i % 10, "Gram", i + 1, 1.0, LocalDate.of(2024, 1, 1).plusDays(i));
+        }
+        for (int i = 0; i < 4000; i++) {
+            assertTrue(inventory.removeUnits("item " + i % 10, 0));
+        }
+
+        assertEquals(1000, inventory.size());
+        assertEquals(4001, inventory.getIngredients("Item 0").amount(), "The oldest remaining batch should be first.");
+        assertEquals(4006, inventory.getIngredients("Item 5").amount());
+        assertEquals(4001, inventory.toIngredients().get(0).getNumberOfItems());
+    }
+}
@@ -0,0 +1,78 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSameSeedGivesSameFiles() throws IOException {
+        DatasetGenerator generator = new DatasetGenerator(42, 100, LocalDate.of(2024, 12, 1));
+        Path first = tempDir.resolve("first.txt");
+        Path second = tempDir.resolve("second.txt");
+        generator.writeIngredients(first, 1000);
+        new DatasetGenerator(42, 100, LocalDate.of(2024, 12, 1)).writeIngredients(second, 1000);
+        assertEquals(-1, Files.mismatch(first, second));
+
+        generator.writeRecipes(first, 100);
+        generator.writeRecipes(second, 100);
+        assertEquals(-1, Files.mismatch(first, second));
+    }
+
+    @Test
+    void testGeneratedFilesCanBeLoaded() throws IOException {
+        DatasetGenerator generator = new DatasetGenerator(7, 500, LocalDate.of(2024, 12, 1));
+        Path ingredients = tempDir.resolve("ingredients.txt");
+        Path recipes = tempDir.resolve("recipes.txt");
+        generator.writeIngredients(ingredients, 5000);
+        generator.writeRecipes(recipes, 300);
+
+        FoodStorage foodStorage = new FoodStorage();
+        new IngredientLog(ingredients.toString()).replay(foodStorage);
+        assertEquals(5000, foodStorage.getIngredients().size(), "Every line should be a valid batch.");
+        for (Ingredient ingredient : foodStorage.getIngredients()) {
+            assertTrue(ingredient.getNumberOfItems() > 0 && ingredient.getPrice() > 0);
+        }
+
+        List<Recipe> parsed = new ArrayList<>();
+        RecipeFileParser.parseFile(recipes.toString(), parsed::add);
+        assertEquals(300, parsed.size());
+        for (Recipe recipe : parsed) {
+            assertTrue(recipe.ingredients().size() >= 2, "Every recipe should use at least two ingredients.");
+            assertEquals(recipe.ingredients().size(),
+                    recipe.ingredients().stream().map(IngredientInfo::name).distinct().count());
+        }
+    }
+
+    @Test
+    void testPopularityFollowsZipf() {
+        DatasetGenerator.ZipfSampler sampler = new DatasetGenerator.ZipfSampler(1000, 1.0);
+        SplittableRandom random = new SplittableRandom(1);
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int rank = sampler.sample(random);
+            assertTrue(rank >= 1 && rank <= 1000);
+            counts.merge(rank, 1, Integer::sum);
+        }
+        // With exponent 1, rank 1 is picked twice as often as rank 2 and ten times as often as rank 10
+        double ratio2 = counts.get(1) / (double) counts.get(2);
+        double ratio10 = counts.get(1) / (double) counts.get(10);
+        assertEquals(2.0, ratio2, 0.2);
+        assertEquals(10.0, ratio10, 1.5);
+    }
+}
@@ -1,15 +1,28 @@
 package edu.ntnu.idi.bidata;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class FoodStorageTest {
 
+    @TempDir
+    Path tempDir;
+
     @Test
     void testAddIngredient() {
         FoodStorage foodStorage = new FoodStorage();
@@ -22,6 +35,179 @@ class FoodStorageTest {
         assertTrue(foodStorage.ingredientExists("Sugar"), "Ingredient should be added.");
     }
 
+    @Test
+    void testLookupIgnoresCaseAndListStaysSorted() {
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addIngredientDirectly(new Ingredient("Sugar", "Gram", 500, 2.5, LocalDate.of(2024, 11, 30)));
+        foodStorage.addIngredientDirectly(new Ingredient("Butter", "Gram", 250, 30.0, LocalDate.of(2024, 12, 1)));
+        foodStorage.addIngredientDirectly(new Ingredient("sugar", "Gram", 100, 1.0, LocalDate.of(2024, 12, 5)));
+
+        IngredientInfo sugar = foodStorage.getIngredients("SUGAR");
+        assertNotNull(sugar, "Lookup should ignore case.");
+        assertEquals(500, sugar.amount(), "The batch that expires first should be returned.");
+        assertNull(foodStorage.getIngredients("Flour"));
+
+        assertEquals(3, foodStorage.getIngredients().size());
+        assertEquals("Butter", foodStorage.getIngredients().get(0).getName(), "List should be sorted by name.");
+    }
+
+    @Test
+    void testLookupAllowsTypos() {
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addIngredientDirectly(new Ingredient("Tomatoes", "Pieces", 4, 12.0, LocalDate.of(2024, 11, 30)));
+
+        assertNull(foodStorage.getIngredients("tomatos", 0), "A distance of 0 should only match the name.");
+        assertEquals("Tomatoes", foodStorage.getIngredients("tomatos", 1).name());
+        assertNull(foodStorage.getIngredients("potatos", 1));
+
+        foodStorage.addIngredientDirectly(new Ingredient("Potatoes", "Pieces", 6, 8.0, LocalDate.of(2024, 12, 1)));
+        assertEquals("potatoes", foodStorage.findClosestName("potatos", 1), "Names added later should be found.");
+        assertTrue(foodStorage.takeIngredient("Potatoes", 6));
+        assertNull(foodStorage.findClosestName("potatos", 1), "Removed names should not be found.");
+    }
+
+    @Test
+    void testExpiryQueries() throws IOException {
+        LocalDate today = LocalDate.now();
+        Files.write(tempDir.resolve("ingredients.txt"), List.of(
+                new Ingredient("Milk", "Liter", 1, 20.0, today.minusDays(2)).toString(),
+                new Ingredient("Bread", "Pieces", 1, 25.0, today.minusDays(1)).toString(),
+                new Ingredient("Egg", "Pieces", 6, 30.0, today.plusDays(2)).toString(),
+                new Ingredient("Cheese", "Gram", 500, 90.0, today.plusDays(30)).toString()));
+        FoodStorage foodStorage = new FoodStorage(tempDir);
+        List<Ingredient> expired = foodStorage.getExpiredGoods();
+        assertEquals(List.of("Bread", "Milk"), expired.stream().map(Ingredient::getName).toList());
+
+        List<Ingredient> expiring = foodStorage.getExpiringWithin(Period.ofDays(7));
+        assertEquals(List.of("Egg"), expiring.stream().map(Ingredient::getName).toList());
+        assertTrue(foodStorage.getExpiringWithin(Period.ZERO).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> foodStorage.getExpiringWithin(Period.ofDays(-1)),
+                "A period ending before today should be rejected.");
+    }
+
+    @Test
+    void testImportFromCsvReportsRejects() throws IOException {
+        Path csv = tempDir.resolve("delivery.csv");
+        Files.write(csv, List.of(
+                "name,unit,numberOfUnits,price,expirationDate",
+                "Milk,Liter,2,25.5,2024-12-01",
+                "Egg,Pieces,twelve,30.0,2024-12-10",
+                "Flour,Gram,1000,0.0,2025-03-01",
+                "Butter,Gram,250,35.0",
+                "Cheese,Gram,500,90.0,2024-12-20",
+                "\"Tomatoes, canned\",Pieces,4,12.0,2025-06-01",
+                " \"Ketchup \"\"Heinz\"\"\",Gram,500,29.0,2025-02-01",
+                "\"Beans, dried,Gram,500,20.0,2025-02-01"));
+        Path file = tempDir.resolve("ingredients.txt");
+        FoodStorage foodStorage = new FoodStorage(tempDir);
+        ImportResult result = foodStorage.importIngredientsFromCsv(csv);
+
+        assertEquals(4, result.imported());
+        assertEquals(List.of(3, 4, 5, 9), result.rejects().stream().map(ImportResult.Reject::row).toList());
+        assertTrue(foodStorage.ingredientExists("Milk") && foodStorage.ingredientExists("Cheese"));
+        assertTrue(foodStorage.ingredientExists("Tomatoes, canned"), "A quoted field may hold a comma.");
+        assertTrue(foodStorage.ingredientExists("Ketchup \"Heinz\""), "Two quotes in a quoted field are one.");
+        assertFalse(foodStorage.ingredientExists("Flour"), "A rejected row should not be added.");
+        assertEquals(4, Files.readAllLines(file).size(), "Only the valid rows should be written.");
+    }
+
+    @Test
+    void testUnitsAreTakenFirstExpiredFirstOut() {
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addIngredientDirectly(new Ingredient("Milk", "Liter", 2, 25.0, LocalDate.of(2024, 12, 10)));
+        foodStorage.addIngredientDirectly(new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 12, 1)));
+        foodStorage.addIngredientDirectly(new Ingredient("Milk", "Liter", 4, 22.0, LocalDate.of(2024, 12, 5)));
+        assertEquals(new IngredientInfo("Milk", 9, "Liter", 20.0), foodStorage.getAvailable("milk"));
+
+        assertTrue(foodStorage.takeIngredient("Milk", 5), "Units should be taken across batches.");
+        assertEquals(new IngredientInfo("Milk", 2, "Liter", 22.0), foodStorage.getIngredients("Milk"),
+                "The batch expiring first is used up and the next one is used in part.");
+        assertEquals(4, foodStorage.getAvailable("Milk").amount());
+        assertEquals(2, foodStorage.getIngredients().size());
+        assertEquals(List.of(LocalDate.of(2024, 12, 5), LocalDate.of(2024, 12, 10)),
+                foodStorage.getIngredients().stream().map(Ingredient::getExpirationDate).toList());
+
+        assertFalse(foodStorage.takeIngredient("Milk", 5), "Only 4 units are left.");
+        assertTrue(foodStorage.applyRemoval("Milk", 0));
+        assertEquals(new IngredientInfo("Milk", 2, "Liter", 25.0), foodStorage.getAvailable("Milk"));
+        assertTrue(foodStorage.takeIngredient("Milk", 2));
+        assertFalse(foodStorage.ingredientExists("Milk"));
+        assertNull(foodStorage.getAvailable("Milk"));
+    }
+
+    @Test
+    void testUnitsOfTheSameDimensionAreSummedAndTakenTogether() {
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addIngredientDirectly(new Ingredient("Milk", "Liter", 1, 20.0, LocalDate.of(2024, 12, 1)));
+        foodStorage.addIngredientDirectly(new Ingredient("Milk", "Milliliter", 500, 12.0, LocalDate.of(2024, 12, 5)));
+        foodStorage.addIngredientDirectly(new Ingredient("Milk", "Cups", 2, 5.0, LocalDate.of(2024, 12, 3)));
+        assertEquals(new IngredientInfo("Milk", 1500, "Milliliter", 20.0), foodStorage.getAvailable("Milk"));
+
+        assertTrue(foodStorage.takeIngredient("Milk", 1), "A liter should be taken from the liter batch.");
+        assertEquals(new IngredientInfo("Milk", 2, "Cups", 5.0), foodStorage.getAvailable("Milk"),
+                "Cups are not a known unit, so they are not summed with the millilitres.");
+        assertTrue(foodStorage.applyRemoval("Milk", 0));
+        assertFalse(foodStorage.takeIngredient("Milk", 501));
+        assertTrue(foodStorage.takeIngredient("Milk", 300));
+        assertEquals(new IngredientInfo("Milk", 200, "Milliliter", 12.0), foodStorage.getAvailable("Milk"));
+
+        foodStorage.addIngredientDirectly(new Ingredient("Flour", "Kilogram", 1, 30.0, LocalDate.of(2024, 12, 1)));
+        foodStorage.addIngredientDirectly(new Ingredient("Flour", "Gram", 500, 20.0, LocalDate.of(2024, 12, 9)));
+        assertTrue(foodStorage.takeIngredient("Flour", 1));
+        assertEquals(new IngredientInfo("Flour", 500, "Gram", 20.0), foodStorage.getAvailable("Flour"));
+        assertFalse(foodStorage.takeIngredient("Flour", 501));
+        assertTrue(foodStorage.takeIngredient("Flour", 200));
+        assertEquals(new IngredientInfo("Flour", 300, "Gram", 20.0), foodStorage.getIngredients("Flour"));
+
+        foodStorage.addIngredientDirectly(new Ingredient("Juice", "Milliliter", 500, 10.0, LocalDate.of(2024, 12, 1)));
+        foodStorage.addIngredientDirectly(new Ingredient("Juice", "Liter", 1, 18.0, LocalDate.of(2024, 12, 9)));
+        assertTrue(foodStorage.takeIngredient("Juice", 700));
+        assertEquals(new IngredientInfo("Juice", 800, "Milliliter", 18.0), foodStorage.getIngredients("Juice"),
+                "What is left of a liter that is used in part should be written in millilitres.");
+    }
+
+    @Test
+    void testConcurrentTakesNeverLoseUnits() throws Exception {
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addIngredientDirectly(new Ingredient("Flour", "Gram", 10_000, 40.0, LocalDate.of(2024, 12, 1)));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> takers = new ArrayList<>();
+            for (int t = 0; t < 6; t++) {
+                takers.add(executor.submit(() -> {
+                    int taken = 0;
+                    while (foodStorage.takeIngredient("flour", 1)) {
+                        taken++;
+                    }
+                    return taken;
+                }));
+            }
+            List<Future<?>> adders = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                int thread = t;
+                adders.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        foodStorage.addIngredientDirectly(new Ingredient("Item " + (i % 50), "Pieces",
+                                1, 1.0, LocalDate.of(2024, 12, 1).plusDays(thread)));
+                    }
+                }));
+            }
+
+            int total = 0;
+            for (Future<Integer> taker : takers) {
+                total += taker.get();
+            }
+            for (Future<?> adder : adders) {
+                adder.get();
+            }
+            assertEquals(10_000, total, "Every unit should be taken exactly once.");
+            assertFalse(foodStorage.ingredientExists("Flour"), "The used up batch should be removed.");
+            assertEquals(2000, foodStorage.getIngredients().size(), "No added batch should be lost.");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     void testAddInvalidIngredient() {
         // Create a simulated input string with invalid data (e.g., non-numeric for numberOfUnits)
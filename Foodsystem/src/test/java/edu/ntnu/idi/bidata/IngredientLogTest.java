@@ -0,0 +1,212 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngredientLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReplayAppliesRecordsInOrder() throws IOException {
+        IngredientLog log = new IngredientLog(tempDir.resolve("ingredients.txt").toString());
+        log.appendAdd(new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 11, 30)));
+        log.appendAdd(new Ingredient("Milk", "Liter", 2, 22.0, LocalDate.of(2024, 12, 5)));
+        log.appendAdd(new Ingredient("Egg", "Pieces", 12, 40.0, LocalDate.of(2024, 12, 1)));
+        log.appendDecrement("milk", 1);
+        log.appendRemove("Egg");
+
+        FoodStorage foodStorage = new FoodStorage();
+        log.replay(foodStorage);
+
+        assertEquals(2, foodStorage.getIngredients("Milk").amount(), "First batch should be decremented.");
+        assertEquals(2, foodStorage.getIngredients().size());
+        assertFalse(foodStorage.ingredientExists("Egg"), "Removed batch should be gone.");
+    }
+
+    @Test
+    void testParallelReplayMatchesSequential() throws IOException {
+        IngredientLog log = new IngredientLog(tempDir.resolve("ingredients.txt").toString());
+        for (int i = 0; i < 2000; i++) {
+            log.appendAdd(new Ingredient("Item " + i % 50, "Gram", i + 1, 1.5, LocalDate.of(2024, 11, 1).plusDays(i)));
+            if (i % 7 == 0) {
+                log.appendDecrement("Item " + i % 50, 1);
+            }
+            if (i % 11 == 0) {
+                log.appendRemove("Item " + i % 50);
+            }
+        }
+
+        FoodStorage sequential = new FoodStorage();
+        log.replay(sequential);
+        FoodStorage parallel = new FoodStorage();
+        log.replay(parallel, 4);
+
+        assertEquals(sequential.getIngredients().toString(), parallel.getIngredients().toString());
+    }
+
+    @Test
+    void testCompactKeepsOnlyLiveBatches() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        IngredientLog log = new IngredientLog(file.toString());
+        log.appendAdd(new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 11, 30)));
+        log.appendDecrement("Milk", 1);
+
+        FoodStorage foodStorage = new FoodStorage();
+        log.replay(foodStorage);
+        assertTrue(log.compact(foodStorage.getIngredients()));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("numberOfUnits=2"));
+    }
+
+    @Test
+    void testCompactionSkipsAFileThatChanged() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        IngredientLog log = new IngredientLog(file.toString());
+        log.appendAdd(new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 11, 30)));
+        FoodStorage foodStorage = new FoodStorage();
+        log.replay(foodStorage);
+        new IngredientLog(file.toString()).appendAdd(
+                new Ingredient("Egg", "Pieces", 12, 40.0, LocalDate.of(2024, 12, 1)));
+        byte[] before = Files.readAllBytes(file);
+
+        assertFalse(log.compact(foodStorage.getIngredients(), StorageFormat.TEXT, () -> false));
+        assertArrayEquals(before, Files.readAllBytes(file), "A changed file should not be rewritten.");
+    }
+
+    @Test
+    void testLogsSharingAFileKeepEachOthersRecords() throws Exception {
+        Path file = tempDir.resolve("ingredients.txt");
+        Ingredient rice = new Ingredient("Rice", "Gram", 500, 30.0, LocalDate.of(2025, 1, 1));
+        IngredientLog compacting = new IngredientLog(file.toString());
+        compacting.appendAdd(rice);
+        compacting.replay(new FoodStorage());
+        IngredientLog appending = new IngredientLog(file.toString());
+
+        Thread appender = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                appending.appendAdd(new Ingredient("Beans", "Pieces", 1, 10.0, LocalDate.of(2025, 2, 1)));
+            }
+        });
+        appender.start();
+        for (int i = 0; i < 200; i++) {
+            compacting.compact(List.of(rice), StorageFormat.TEXT, compacting::isInSync);
+        }
+        appender.join();
+
+        FoodStorage foodStorage = new FoodStorage();
+        new IngredientLog(file.toString()).replay(foodStorage);
+        assertEquals(500, foodStorage.getIngredients("Rice").amount());
+        assertEquals(201, foodStorage.getIngredients().size(), "No append should be lost to a compaction.");
+        assertFalse(compacting.isInSync(), "The other log's records should put the compacting log out of sync.");
+    }
+
+    @Test
+    void testAnotherAppendPutsTheLogOutOfSync() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        IngredientLog log = new IngredientLog(file.toString());
+        log.appendAdd(new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 11, 30)));
+        assertFalse(log.isInSync(), "A log that never read the file is not in sync with it.");
+        log.replay(new FoodStorage());
+        log.appendDecrement("Milk", 1);
+        assertTrue(log.isInSync(), "Its own appends should keep the log in sync.");
+
+        new IngredientLog(file.toString()).appendDecrement("Milk", 1);
+        log.appendDecrement("Milk", 1);
+        assertFalse(log.isInSync(), "An append after another log's should not hide the other record.");
+    }
+
+    @Test
+    void testBinaryCompactionRoundTrip() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        IngredientLog log = new IngredientLog(file.toString());
+        log.appendAdd(new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 11, 30)));
+        log.appendAdd(new Ingredient("Egg", "Pieces", 12, 40.5, LocalDate.of(2024, 12, 1)));
+
+        FoodStorage foodStorage = new FoodStorage();
+        log.replay(foodStorage);
+        assertTrue(log.compact(foodStorage.getIngredients(), StorageFormat.BINARY));
+        log.appendDecrement("Egg", 2);
+
+        FoodStorage reloaded = new FoodStorage();
+        new IngredientLog(file.toString()).replay(reloaded);
+        assertEquals(2, reloaded.getIngredients().size());
+        assertEquals(10, reloaded.getIngredients("Egg").amount());
+        assertEquals(40.5, reloaded.getIngredients("Egg").price());
+        assertEquals(LocalDate.of(2024, 11, 30), reloaded.getIngredients().get(1).getExpirationDate());
+    }
+
+    @Test
+    void testRecoverRepairsWhatACrashLeavesBehind() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        IngredientLog log = new IngredientLog(file.toString());
+        log.appendAdd(new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 11, 30)));
+        // A crash in the middle of an append, and during a binary compaction
+        Files.writeString(file, "Decrement{name='Milk', numb", StandardOpenOption.APPEND);
+        Files.writeString(tempDir.resolve("ingredients.txt.tmp"), "Snapshot{id=1}\n");
+        Files.write(tempDir.resolve("ingredients.txt.1.bin"), new byte[] {1, 2, 3});
+
+        IngredientLog recovered = new IngredientLog(file.toString());
+        FoodStorage foodStorage = new FoodStorage();
+        recovered.replay(foodStorage);
+        assertEquals(3, foodStorage.getIngredients("Milk").amount(), "The torn record should be dropped.");
+
+        recovered.appendDecrement("Milk", 1); // Would be glued to the torn record without recovery
+        foodStorage = new FoodStorage();
+        new IngredientLog(file.toString()).replay(foodStorage);
+        assertEquals(2, foodStorage.getIngredients("Milk").amount(), "Records after recovery should apply.");
+        assertFalse(Files.exists(tempDir.resolve("ingredients.txt.tmp")));
+        assertFalse(Files.exists(tempDir.resolve("ingredients.txt.1.bin")), "Unused snapshot should be deleted.");
+    }
+
+    @Test
+    void testAWholeLastRecordWithoutALineBreakIsKept() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        Files.writeString(file, "Ingredient{name='Milk', unit='Liter', numberOfUnits=3, price=20.0, "
+                + "expirationDate=2024-11-30}\nDecrement{name='Milk', numberOfUnits=1}");
+
+        IngredientLog log = new IngredientLog(file.toString());
+        FoodStorage foodStorage = new FoodStorage();
+        log.replay(foodStorage);
+        assertEquals(2, foodStorage.getIngredients("Milk").amount(), "A whole last record should be replayed.");
+
+        log.appendDecrement("Milk", 1);
+        foodStorage = new FoodStorage();
+        new IngredientLog(file.toString()).replay(foodStorage);
+        assertEquals(1, foodStorage.getIngredients("Milk").amount(), "The last record should be kept on disk.");
+    }
+
+    @Test
+    void testConversionLeavesTheSourceAlone() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        Path binary = tempDir.resolve("ingredients.bin");
+        new IngredientLog(file.toString()).appendAdd(
+                new Ingredient("Milk", "Liter", 3, 20.0, LocalDate.of(2024, 11, 30)));
+        Files.writeString(file, "Decrement{name='Milk', numb", StandardOpenOption.APPEND);
+        Files.write(tempDir.resolve("ingredients.txt.7.bin"), new byte[] {1, 2, 3});
+        byte[] source = Files.readAllBytes(file);
+
+        BinaryIngredientFormat.convertTextToBinary(file.toString(), binary.toString());
+        assertArrayEquals(source, Files.readAllBytes(file), "Converting should not repair the source.");
+        assertTrue(Files.exists(tempDir.resolve("ingredients.txt.7.bin")), "Converting should not delete snapshots.");
+        assertEquals(3, BinaryIngredientFormat.read(binary.toString()).get(0).getNumberOfItems());
+
+        byte[] bytes = Files.readAllBytes(binary);
+        Files.write(binary, Arrays.copyOf(bytes, bytes.length - 3));
+        IOException e = assertThrows(IOException.class, () -> BinaryIngredientFormat.read(binary.toString()));
+        assertTrue(e.getMessage().contains("offset"), "A cut short file should be reported with its offset.");
+    }
+}
@@ -0,0 +1,55 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngredientNameTrieTest {
+
+    @Test
+    void testCompletesByUsesThenByName() {
+        IngredientNameTrie trie = new IngredientNameTrie();
+        trie.add("Tomato", 1);
+        trie.add("Tomato paste", 3);
+        trie.add("Tofu", 0);
+        trie.add("Tortilla", 1);
+        trie.add("Salt", 5);
+        trie.add("tomato", 1);
+
+        assertEquals(5, trie.size(), "The same name in another case should not be added again.");
+        assertEquals(List.of("Tomato paste", "Tomato", "Tortilla", "Tofu"), trie.complete("to", 10));
+        assertEquals(List.of("Tomato paste", "Tomato"), trie.complete("TOMA", 2));
+        assertEquals(List.of("Tomato paste"), trie.complete("tomato ", 10));
+        assertEquals(List.of("Salt", "Tomato paste"), trie.complete("", 2));
+        assertTrue(trie.complete("tomb", 10).isEmpty());
+        assertTrue(trie.contains("TOFU"));
+        assertFalse(trie.contains("tom"), "A prefix of a name is not a name.");
+    }
+
+    @Test
+    void testTakenUsesLowerTheRank() {
+        IngredientNameTrie trie = new IngredientNameTrie();
+        trie.add("Milk", 2);
+        trie.add("Mint", 1);
+        trie.add("Milk", -2);
+
+        assertEquals(List.of("Mint", "Milk"), trie.complete("mi", 10));
+    }
+
+    @Test
+    void testFollowsTheNamesInStorage() {
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addIngredientDirectly(new Ingredient("Basil", "Gram", 10, 5.0, LocalDate.now().plusDays(3)));
+        IngredientNameTrie trie = new IngredientNameTrie();
+        trie.add("Basmati rice", 1);
+        trie.ingredientsReloaded(foodStorage);
+        foodStorage.addListener(trie);
+
+        assertEquals(List.of("Basmati rice", "Basil"), trie.complete("bas", 10));
+        foodStorage.addIngredientDirectly(new Ingredient("Bay leaf", "Pieces", 4, 2.0, LocalDate.now()));
+        assertEquals(List.of("Bay leaf"), trie.complete("bay", 10), "Names added to the storage should be followed.");
+    }
+}
@@ -0,0 +1,27 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeasurementUnitTest {
+
+    @Test
+    void testParseAcceptsNamesAndAbbreviations() {
+        assertEquals(MeasurementUnit.GRAM, MeasurementUnit.parse("Gram"));
+        assertEquals(MeasurementUnit.KILOGRAM, MeasurementUnit.parse(" KG "));
+        assertEquals(MeasurementUnit.LITER, MeasurementUnit.parse("litre"));
+        assertEquals(MeasurementUnit.PIECES, MeasurementUnit.parse("Pieces"));
+        assertNull(MeasurementUnit.parse("Pinch"));
+        assertNull(MeasurementUnit.parse(null));
+    }
+
+    @Test
+    void testToBaseUsesGramsMillilitresAndPieces() {
+        assertEquals(2500, MeasurementUnit.KILOGRAM.toBase(2) + MeasurementUnit.GRAM.toBase(500));
+        assertEquals(1000, MeasurementUnit.LITER.toBase(1));
+        assertEquals(45, MeasurementUnit.TABLESPOON.toBase(3));
+        assertEquals(MeasurementUnit.Dimension.VOLUME, MeasurementUnit.TEASPOON.getDimension());
+        assertEquals(6, MeasurementUnit.PIECES.toBase(6));
+    }
+}
@@ -0,0 +1,83 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapInventoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReopenedStoreHasTheSameBatches() throws IOException {
+        Path file = tempDir.resolve("inventory.bin");
+        try (OffHeapInventory inventory = OffHeapInventory.open(file)) {
+            inventory.add("Milk", "Liter", 2, 20.0, LocalDate.of(2024, 12, 1));
+            inventory.add("Egg", "Pieces", 12, 40.0, LocalDate.of(2024, 12, 10));
+            inventory.add("milk", "Liter", 1, 15.0, LocalDate.of(2024, 12, 20));
+            assertTrue(inventory.removeUnits("MILK", 0));
+            assertTrue(inventory.removeUnits("Egg", 2));
+        }
+
+        try (OffHeapInventory inventory = OffHeapInventory.open(file)) {
+            assertEquals(2, inventory.size());
+            assertEquals(new IngredientInfo("milk", 1, "Liter", 15.0), inventory.getIngredients("Milk"));
+            assertEquals(10, inventory.getIngredients("egg").amount());
+            assertEquals(1, inventory.countExpiringBefore(LocalDate.of(2024, 12, 15).toEpochDay()));
+
+            inventory.add("Milk", "Liter", 3, 30.0, LocalDate.of(2025, 1, 1));
+            assertTrue(inventory.removeUnits("Milk", 0));
+            assertEquals(3, inventory.getIngredients("Milk").amount(), "Batches added after reopening should follow the old ones.");
+        }
+    }
+
+    @Test
+    void testRemoveUnitsKeepsTheSemanticsOfFoodStorage() throws IOException {
+        List<Ingredient> batches = List.of(
+                new Ingredient("Butter", "Gram", 250, 30.0, LocalDate.of(2024, 12, 5)),
+                new Ingredient("Butter", "Gram", 100, 15.0, LocalDate.of(2024, 12, 1)),
+                new Ingredient("Butter", "Kilogram", 1, 90.0, LocalDate.of(2024, 12, 20)));
+        FoodStorage foodStorage = new FoodStorage();
+        batches.forEach(foodStorage::addIngredientDirectly);
+        Path file = tempDir.resolve("inventory.bin");
+        try (OffHeapInventory inventory = OffHeapInventory.open(file)) {
+            for (Ingredient batch : batches) {
+                inventory.add(batch.getName(), batch.getUnit(), batch.getNumberOfItems(), batch.getPrice(),
+                        batch.getExpirationDate());
+            }
+            assertEquals(foodStorage.getIngredients("Butter"), inventory.getIngredients("Butter"),
+                    "The batch expiring first should be used first.");
+            assertFalse(inventory.removeUnits("Butter", 1351));
+            assertEquals(foodStorage.applyRemoval("Butter", 300), inventory.removeUnits("Butter", 300),
+                    "Units should be taken across batches.");
+            assertEquals(foodStorage.getIngredients("Butter"), inventory.getIngredients("Butter"));
+            assertFalse(inventory.removeUnits("Cheese", 0));
+        }
+
+        try (OffHeapInventory inventory = OffHeapInventory.open(file)) {
+            assertEquals(foodStorage.getIngredients("Butter"), inventory.getIngredients("Butter"),
+                    "The order the batches are used in should survive reopening.");
+            assertEquals(foodStorage.applyRemoval("Butter", 300), inventory.removeUnits("Butter", 300));
+            assertEquals(new IngredientInfo("Butter", 750, "Gram", 90.0), inventory.getIngredients("Butter"));
+            assertEquals(foodStorage.getIngredients("Butter"), inventory.getIngredients("Butter"));
+            assertTrue(inventory.removeUnits("Butter", 750), "Taking all units should remove the batch.");
+            assertFalse(inventory.contains("Butter"));
+            assertTrue(inventory.toIngredients().isEmpty());
+        }
+    }
+
+    @Test
+    void testOpenRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("ingredients.txt");
+        Files.writeString(file, "Milk,Liter,2,20.0,2024-12-01\n".repeat(10));
+        assertThrows(IOException.class, () -> OffHeapInventory.open(file));
+    }
+}
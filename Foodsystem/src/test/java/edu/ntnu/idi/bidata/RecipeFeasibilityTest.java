@@ -0,0 +1,105 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeFeasibilityTest {
+
+    private static Recipe recipe(String name, IngredientInfo... ingredients) {
+        return new Recipe(name, "Cook it", new ArrayList<>(List.of(ingredients)), 2);
+    }
+
+    @Test
+    void testFollowsTheStockLikeRecipeIndex() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        inventory.add("Egg", "Pieces", 6, 30.0, LocalDate.of(2024, 12, 1));
+        RecipeFeasibility feasibility = new RecipeFeasibility(inventory);
+        int omelette = feasibility.add(recipe("Omelette",
+                new IngredientInfo("egg", 3, "Pieces", 0.0), new IngredientInfo("Milk", 1, "Liter", 0.0)));
+        int boiledEgg = feasibility.add(recipe("Boiled egg", new IngredientInfo("Egg", 1, "Pieces", 0.0)));
+        int pancakes = feasibility.add(recipe("Pancakes", new IngredientInfo("Egg", 2, "Gram", 0.0)));
+
+        assertFalse(feasibility.canMake(omelette), "Milk is not in stock yet.");
+        assertTrue(feasibility.canMake(boiledEgg));
+        assertFalse(feasibility.canMake(pancakes), "Grams cannot be compared to pieces.");
+
+        inventory.add("Milk", "Liter", 1, 20.0, LocalDate.of(2024, 12, 2));
+        assertTrue(feasibility.canMake(omelette), "Names added after compiling should be found.");
+        assertEquals(50.0, feasibility.totalPrice(omelette), 1e-9);
+
+        int[] cookable = new int[feasibility.size()];
+        assertEquals(2, feasibility.findCookable(cookable));
+        assertEquals("Omelette", feasibility.getRecipe(cookable[0]).name());
+        assertEquals("Boiled egg", feasibility.getRecipe(cookable[1]).name());
+
+        inventory.removeUnits("Egg", 4);
+        assertFalse(feasibility.canMake(omelette));
+        assertTrue(feasibility.canMake(boiledEgg));
+    }
+
+    @Test
+    void testAgreesWithRecipeIndexOverAllBatches() {
+        List<Ingredient> batches = List.of(
+                new Ingredient("Egg", "Pieces", 2, 10.0, LocalDate.of(2024, 12, 1)),
+                new Ingredient("Egg", "Pieces", 2, 12.0, LocalDate.of(2024, 11, 28)),
+                new Ingredient("Milk", "Milliliter", 300, 8.0, LocalDate.of(2024, 12, 2)),
+                new Ingredient("Milk", "Liter", 1, 20.0, LocalDate.of(2024, 12, 9)));
+        ColumnarInventory inventory = ColumnarInventory.of(batches);
+        FoodStorage foodStorage = new FoodStorage();
+        batches.forEach(foodStorage::addIngredientDirectly);
+        RecipeFeasibility feasibility = new RecipeFeasibility(inventory);
+        RecipeIndex index = new RecipeIndex();
+        List<Recipe> recipes = List.of(
+                recipe("Omelette", new IngredientInfo("Egg", 3, "Pieces", 0.0), new IngredientInfo("Milk", 1, "Liter", 0.0)),
+                recipe("Scrambled eggs", new IngredientInfo("Egg", 4, "Pieces", 0.0)),
+                recipe("Pancakes", new IngredientInfo("Egg", 5, "Pieces", 0.0)),
+                recipe("Hot milk", new IngredientInfo("Milk", 13, "dl", 0.0)));
+        for (Recipe recipe : recipes) {
+            feasibility.add(recipe);
+            index.addRecipe(recipe);
+        }
+        index.updateStock(foodStorage);
+        foodStorage.addListener(index);
+
+        assertEquals(List.of("Hot milk", "Omelette", "Scrambled eggs"), cookable(feasibility),
+                "The batches of an ingredient should be summed.");
+        assertEquals(cookable(index), cookable(feasibility));
+
+        assertTrue(foodStorage.applyRemoval("Egg", 1) && inventory.removeUnits("Egg", 1));
+        assertTrue(foodStorage.applyRemoval("Milk", 300) && inventory.removeUnits("Milk", 300));
+        assertEquals(List.of("Omelette"), cookable(feasibility));
+        assertEquals(cookable(index), cookable(feasibility));
+        assertEquals(index.getTotalPrice("Omelette"), feasibility.totalPrice(0), 1e-9);
+    }
+
+    private static List<String> cookable(RecipeFeasibility feasibility) {
+        int[] ids = new int[feasibility.size()];
+        int count = feasibility.findCookable(ids);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add(feasibility.getRecipe(ids[i]).name());
+        }
+        return names.stream().sorted().toList();
+    }
+
+    private static List<String> cookable(RecipeIndex index) {
+        return index.getCookableRecipes().stream().map(Recipe::name).sorted().toList();
+    }
+
+    @Test
+    void testComparesBaseQuantities() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        inventory.add("Milk", "Liter", 1, 20.0, LocalDate.of(2024, 12, 1));
+        RecipeFeasibility feasibility = new RecipeFeasibility(inventory);
+        int sauce = feasibility.add(recipe("Sauce", new IngredientInfo("Milk", 5, "dl", 0.0)));
+        int soup = feasibility.add(recipe("Soup", new IngredientInfo("Milk", 1500, "Milliliter", 0.0)));
+
+        assertTrue(feasibility.canMake(sauce));
+        assertFalse(feasibility.canMake(soup));
+    }
+}
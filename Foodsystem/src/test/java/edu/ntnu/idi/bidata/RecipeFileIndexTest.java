@@ -0,0 +1,70 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeFileIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Recipe recipe(String name) {
+        return new Recipe(name, "Cook " + name,
+                new ArrayList<>(List.of(new IngredientInfo("Item", 2, "Gram", 2.5))), 2);
+    }
+
+    @Test
+    void testWrittenRecipesCanBeReadOneByOne() throws IOException {
+        List<Recipe> recipes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            recipes.add(recipe("Dish " + i));
+        }
+        try (RecipeManager recipeManager = new RecipeManager()) {
+            recipeManager.addRecipes(recipes, tempDir.toString());
+            recipeManager.addRecipe("Toast", new ArrayList<>(List.of(new IngredientInfo("Bread", 2, "Pieces", 5.0))),
+                    "Toast it", 1, tempDir.toString());
+        }
+
+        Path file = tempDir.resolve("recipes.txt");
+        assertTrue(Files.exists(RecipeFileIndex.indexPathOf(file)));
+        try (RecipeFileIndex index = RecipeFileIndex.open(file)) {
+            assertEquals(RecipeWriter.format(recipes.get(42)).strip(), index.read("Dish 42"));
+            assertTrue(index.read("Toast").startsWith("Recipe Name: Toast\nIngredient: Bread"));
+            assertNull(index.read("Dish 4200"));
+        }
+    }
+
+    @Test
+    void testIndexCatchesUpWithTheRecipeFile() throws IOException {
+        Path file = tempDir.resolve("recipes.txt");
+        Files.writeString(file, RecipeWriter.format(recipe("Soup")));
+        try (RecipeFileIndex index = RecipeFileIndex.open(file)) {
+            assertNotNull(index.read("Soup"));
+        }
+
+        // Written by someone else, after the index was closed
+        Files.writeString(file, RecipeWriter.format(recipe("Stew")) + RecipeWriter.format(recipe("Soup")),
+                StandardOpenOption.APPEND);
+        try (RecipeFileIndex index = RecipeFileIndex.open(file)) {
+            assertEquals(RecipeWriter.format(recipe("Stew")).strip(), index.read("Stew"));
+            assertTrue(index.find("Soup").offset() > 0, "The last recipe with a name should be used.");
+        }
+
+        // Replaced by a different file of the same size
+        Files.writeString(file, RecipeWriter.format(recipe("Pie")) + RecipeWriter.format(recipe("Stew"))
+                + RecipeWriter.format(recipe("Soup")));
+        try (RecipeFileIndex index = RecipeFileIndex.open(file)) {
+            assertEquals(RecipeWriter.format(recipe("Stew")).strip(), index.read("Stew"), "A stale index should be rebuilt.");
+            assertNotNull(index.read("Pie"));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeFileParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testParseFile() throws IOException {
+        Path file = tempDir.resolve("recipes.txt");
+        Files.writeString(file, """
+                Recipe Name: Pancakes
+                Ingredient: Milk, Amount: 1 Liter, Price: 20.0
+                Ingredient: Egg, Amount: 3 Pieces, Price: 12.5
+                Instructions: Mix and fry
+                Number of people: 4
+
+                Recipe Name: Toast\r
+                Ingredient: Bread, Amount: 2 Pieces, Price: 5.0\r
+                Ingredient: Broken line, Amount: two Pieces, Price: 5.0\r
+                Instructions: Toast it\r
+                Number of people: 1""");
+
+        List<Recipe> recipes = new ArrayList<>();
+        RecipeFileParser.parseFile(file.toString(), recipes::add);
+
+        assertEquals(2, recipes.size());
+        Recipe pancakes = recipes.get(0);
+        assertEquals("Pancakes", pancakes.name());
+        assertEquals("Mix and fry", pancakes.instructions());
+        assertEquals(4, pancakes.servings());
+        assertEquals(2, pancakes.ingredients().size());
+        IngredientInfo egg = pancakes.ingredients().get(1);
+        assertEquals("Egg", egg.name());
+        assertEquals(3, egg.amount());
+        assertEquals("Pieces", egg.unit());
+        assertEquals(12.5, egg.price());
+
+        Recipe toast = recipes.get(1);
+        assertEquals("Toast", toast.name());
+        assertEquals(1, toast.ingredients().size(), "Lines that do not match should be skipped.");
+        assertEquals(1, toast.servings());
+    }
+
+    @Test
+    void testParallelParseMatchesSequential() throws IOException {
+        Path file = tempDir.resolve("recipes.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("Recipe Name: Dish ").append(i).append('\n');
+            for (int j = 0; j < i % 4 + 1; j++) {
+                content.append("Ingredient: Item ").append(j).append(", Amount: ").append(i + j)
+                        .append(" Gram, Price: ").append(j).append(".5\n");
+            }
+            content.append("Instructions: Cook ").append(i).append('\n');
+            content.append("Number of people: ").append(i % 6 + 1).append("\n\n");
+        }
+        Files.writeString(file, content);
+
+        List<Recipe> sequential = new ArrayList<>();
+        RecipeFileParser.parseFile(file.toString(), sequential::add);
+        List<Recipe> parallel = new ArrayList<>();
+        RecipeFileParser.parseFileInParallel(file.toString(), 4, parallel::add);
+
+        assertEquals(500, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+}
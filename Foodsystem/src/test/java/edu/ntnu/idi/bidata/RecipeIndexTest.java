@@ -0,0 +1,135 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeIndexTest {
+
+    private static Recipe recipe(String name, IngredientInfo... ingredients) {
+        return new Recipe(name, "Cook it", new ArrayList<>(List.of(ingredients)), 2);
+    }
+
+    @Test
+    void testRecipeBecomesCookableWhenAllIngredientsAreInStock() {
+        RecipeIndex index = new RecipeIndex();
+        index.addRecipe(recipe("Omelette",
+                new IngredientInfo("Egg", 3, "Pieces", 0.0),
+                new IngredientInfo("Milk", 1, "Liter", 0.0)));
+
+        index.updateIngredient("egg", new IngredientInfo("Egg", 6, "Pieces", 30.0));
+        assertTrue(index.getCookableRecipes().isEmpty(), "Milk is still missing.");
+
+        index.updateIngredient("Milk", new IngredientInfo("Milk", 2, "Liter", 20.0));
+        assertEquals(List.of("Omelette"), index.getCookableRecipes().stream().map(Recipe::name).toList());
+        assertEquals(50.0, index.getTotalPrice("Omelette"));
+
+        index.updateIngredient("Egg", new IngredientInfo("Egg", 2, "Pieces", 10.0));
+        assertTrue(index.getCookableRecipes().isEmpty(), "Not enough eggs left.");
+    }
+
+    @Test
+    void testMisspelledIngredientsUseTheClosestNameInStock() {
+        RecipeIndex index = new RecipeIndex();
+        index.addRecipe(recipe("Salad", new IngredientInfo("Tomatos", 2, "Pieces", 0.0)));
+        index.updateIngredient("Tomatoes", new IngredientInfo("Tomatoes", 4, "Pieces", 12.0));
+        assertTrue(index.getCookableRecipes().isEmpty(), "Names should only match exactly by default.");
+
+        index.setMaxDistance(1);
+        assertEquals(List.of("Salad"), index.getCookableRecipes().stream().map(Recipe::name).toList());
+        assertEquals(12.0, index.getTotalPrice("Salad"));
+
+        index.updateIngredient("Tomatos", new IngredientInfo("Tomatos", 2, "Pieces", 5.0));
+        assertEquals(5.0, index.getTotalPrice("Salad"), "The name itself should be used when it is in stock.");
+
+        index.updateIngredient("Tomatos", null);
+        index.updateIngredient("Tomatoes", null);
+        assertTrue(index.getCookableRecipes().isEmpty());
+        index.updateIngredient("Tomatoes", new IngredientInfo("Tomatoes", 4, "Pieces", 12.0));
+        assertEquals(1, index.getCookableRecipes().size(), "A name coming into stock should be matched.");
+    }
+
+    @Test
+    void testTopCookableKeepsTheBestRecipes() {
+        RecipeIndex index = new RecipeIndex();
+        index.addRecipe(new Recipe("Toast", "Toast it", new ArrayList<>(List.of(
+                new IngredientInfo("Bread", 2, "Pieces", 0.0))), 1));
+        index.addRecipe(new Recipe("Sandwich", "Fill it", new ArrayList<>(List.of(
+                new IngredientInfo("Bread", 2, "Pieces", 0.0),
+                new IngredientInfo("Cheese", 100, "Gram", 0.0))), 4));
+        index.addRecipe(new Recipe("Cheese plate", "Slice it", new ArrayList<>(List.of(
+                new IngredientInfo("Cheese", 200, "Gram", 0.0))), 2));
+        index.addRecipe(new Recipe("Cake", "Bake it", new ArrayList<>(List.of(
+                new IngredientInfo("Flour", 300, "Gram", 0.0))), 8));
+        index.updateIngredient("Bread", new IngredientInfo("Bread", 10, "Pieces", 20.0));
+        index.updateIngredient("Cheese", new IngredientInfo("Cheese", 500, "Gram", 60.0));
+
+        List<RecipeSuggestion> cheapest = index.getTopCookable(2, RecipeSuggestion.CHEAPEST_FIRST);
+        assertEquals(List.of("Toast", "Cheese plate"), cheapest.stream().map(s -> s.recipe().name()).toList());
+        assertEquals(new RecipeSuggestion(cheapest.get(0).recipe(), 20.0, 1), cheapest.get(0));
+        assertEquals(List.of("Sandwich", "Toast"), index.getTopCookable(2, RecipeSuggestion.CHEAPEST_PER_SERVING)
+                .stream().map(s -> s.recipe().name()).toList());
+        assertEquals(List.of("Sandwich", "Cheese plate", "Toast"), index.getTopCookable(10,
+                        Comparator.comparingInt(RecipeSuggestion::servings).reversed())
+                .stream().map(s -> s.recipe().name()).toList(), "Any order should work.");
+
+        index.updateIngredient("Bread", new IngredientInfo("Bread", 10, "Pieces", 100.0));
+        assertEquals("Cheese plate", index.getTopCookable(1, RecipeSuggestion.CHEAPEST_FIRST).get(0).recipe().name(),
+                "A price change should move a recipe.");
+        assertTrue(index.getTopCookable(0, RecipeSuggestion.CHEAPEST_FIRST).isEmpty());
+    }
+
+    @Test
+    void testUpdateStockFollowsFoodStorage() {
+        RecipeIndex index = new RecipeIndex();
+        index.addRecipe(recipe("Toast", new IngredientInfo("Bread", 2, "Pieces", 0.0)));
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addIngredientDirectly(new Ingredient("Bread", "Pieces", 4, 25.0, LocalDate.of(2024, 12, 1)));
+
+        index.updateStock(foodStorage);
+        assertEquals(1, index.getCookableRecipes().size());
+
+        foodStorage.clearIngredients();
+        index.updateStock(foodStorage);
+        assertTrue(index.getCookableRecipes().isEmpty(), "Bread is no longer in stock.");
+    }
+
+    @Test
+    void testListenerFollowsStockChanges() {
+        RecipeIndex index = new RecipeIndex();
+        index.addRecipe(recipe("Toast", new IngredientInfo("Bread", 2, "Pieces", 0.0)));
+        FoodStorage foodStorage = new FoodStorage();
+        foodStorage.addListener(index);
+
+        foodStorage.addIngredientDirectly(new Ingredient("Bread", "Pieces", 4, 25.0, LocalDate.of(2024, 12, 1)));
+        assertEquals(1, index.getCookableRecipes().size());
+
+        foodStorage.applyRemoval("Bread", 3);
+        assertTrue(index.getCookableRecipes().isEmpty(), "Only one slice of bread is left.");
+    }
+
+    @Test
+    void testAmountsInOtherUnitsOfTheSameDimensionMatch() {
+        RecipeIndex index = new RecipeIndex();
+        index.addRecipe(recipe("Pancakes",
+                new IngredientInfo("Milk", 500, "ml", 0.0),
+                new IngredientInfo("Flour", 300, "Gram", 0.0),
+                new IngredientInfo("Salt", 1, "Pinch", 0.0)));
+
+        index.updateIngredient("Milk", new IngredientInfo("Milk", 1, "Liter", 20.0));
+        index.updateIngredient("Flour", new IngredientInfo("Flour", 2, "Pieces", 25.0));
+        index.updateIngredient("Salt", new IngredientInfo("Salt", 3, "Pinch", 1.0));
+        assertTrue(index.getCookableRecipes().isEmpty(), "Pieces of flour cannot be compared to grams.");
+
+        index.updateIngredient("Flour", new IngredientInfo("Flour", 1, "Kilogram", 25.0));
+        assertEquals(List.of("Pancakes"), index.getCookableRecipes().stream().map(Recipe::name).toList());
+
+        index.updateIngredient("Milk", new IngredientInfo("Milk", 4, "Deciliter", 15.0));
+        assertTrue(index.getCookableRecipes().isEmpty(), "400 ml is less than 500 ml.");
+    }
+}
@@ -0,0 +1,80 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeSearchIndexTest {
+
+    private static Recipe recipe(String name, String instructions) {
+        return new Recipe(name, instructions, new ArrayList<>(), 2);
+    }
+
+    private static List<String> names(List<RecipeSearchIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.recipe().name()).toList();
+    }
+
+    @Test
+    void testRanksNameMatchesAndRareWordsFirst() {
+        RecipeSearchIndex index = new RecipeSearchIndex();
+        index.addRecipe(recipe("Tomato soup", "Boil the tomatoes, then blend."));
+        index.addRecipe(recipe("Pasta", "Boil the pasta and add tomato sauce."));
+        index.addRecipe(recipe("Pancakes", "Whisk milk, eggs and flour. Fry."));
+
+        assertEquals(List.of("Tomato soup", "Pasta"), names(index.search("TOMATO", 10)),
+                "A word in the name should count more than in the instructions.");
+        assertEquals(List.of("Pancakes", "Tomato soup", "Pasta"), names(index.search("fry boil", 10)),
+                "A rare word should count more than a common one.");
+        assertEquals(List.of("Pancakes"), names(index.search("whisk", 1)));
+        assertTrue(index.search("lasagne", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    void testFindsPartialWords() {
+        RecipeSearchIndex index = new RecipeSearchIndex();
+        index.addRecipe(recipe("Chocolate cake", "Melt the chocolate."));
+        index.addRecipe(recipe("Hot cocoa", "Heat the milk."));
+
+        assertEquals(List.of("Chocolate cake"), names(index.search("choc", 10)));
+        assertEquals(List.of("Chocolate cake"), names(index.search("colat", 10)), "Parts inside a word should match.");
+        assertEquals(List.of("Chocolate cake", "Hot cocoa"), names(index.search("c", 10)));
+    }
+
+    @Test
+    void testReplacedRecipesAreNotFound() {
+        RecipeSearchIndex index = new RecipeSearchIndex();
+        index.addRecipe(recipe("Stew", "Simmer the beef."));
+        index.addRecipe(recipe("Stew", "Simmer the beans."));
+
+        assertEquals(1, index.size());
+        assertTrue(index.search("beef", 10).isEmpty());
+        assertEquals("Simmer the beans.", index.search("stew", 10).get(0).recipe().instructions());
+    }
+
+    @Test
+    void testReloadingAndReplacingKeepTheIndexCorrect() {
+        RecipeSearchIndex index = new RecipeSearchIndex();
+        for (int reload = 0; reload < 3; reload++) {
+            for (int i = 0; i < 100; i++) {
+                index.addRecipe(recipe("Soup " + i, "Boil the water."));
+            }
+        }
+        assertEquals(100, index.size());
+        assertEquals(100, index.search("water", 1000).size(), "Reloading the same recipes should not add them again.");
+
+        for (String pot : List.of("copper", "iron", "steel", "clay", "glass")) {
+            for (int i = 0; i < 100; i++) {
+                index.addRecipe(recipe("Soup " + i, "Boil the water in a " + pot + " pot."));
+            }
+        }
+        assertEquals(100, index.size());
+        assertEquals(100, index.search("water", 1000).size());
+        assertEquals(100, index.search("glass", 1000).size(), "Recipes should keep their latest instructions.");
+        assertTrue(index.search("clay", 1000).isEmpty(), "Replaced recipes should not be found.");
+        assertTrue(index.search("copper", 1000).isEmpty(), "Replaced recipes should not be found after the index is rebuilt.");
+    }
+}
@@ -0,0 +1,75 @@
+package edu.ntnu.idi.bidata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Recipe recipe(int i) {
+        return new Recipe("Dish " + i, "Cook " + i,
+                new ArrayList<>(List.of(new IngredientInfo("Item " + i, i + 1, "Gram", 2.5))), 2);
+    }
+
+    @Test
+    void testAddRecipesWritesEveryRecipeOnce() throws IOException {
+        List<Recipe> recipes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            recipes.add(recipe(i));
+        }
+        try (RecipeManager recipeManager = new RecipeManager()) {
+            assertTrue(recipeManager.addRecipes(recipes, tempDir.toString()));
+            recipeManager.addRecipe("Toast", new ArrayList<>(List.of(new IngredientInfo("Bread", 2, "Pieces", 5.0))),
+                    "Toast it", 1, tempDir.toString());
+        }
+
+        List<Recipe> parsed = new ArrayList<>();
+        RecipeFileParser.parseFile(tempDir.resolve("recipes.txt").toString(), parsed::add);
+        assertEquals(1001, parsed.size());
+        assertEquals(recipes, parsed.subList(0, 1000));
+        assertEquals("Toast", parsed.get(1000).name());
+    }
+
+    @Test
+    void testConcurrentCommitsKeepRecipesWhole() throws Exception {
+        Path file = tempDir.resolve("recipes.txt");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (RecipeWriter writer = new RecipeWriter(file)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        writer.write(recipe(thread * 250 + i));
+                        if (i % 50 == 0) {
+                            writer.commit();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Recipe> parsed = new ArrayList<>();
+        RecipeFileParser.parseFile(file.toString(), parsed::add);
+        assertEquals(1000, parsed.size());
+        assertEquals(1000, parsed.stream().map(Recipe::name).distinct().count(), "No recipe should be mixed up.");
+    }
+}